@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import costfunction.CostFunction;
+import costfunction.MoveCostFunction;
+import costfunction.MuddinessCostFunction;
+import costfunction.SteepnessCostFunction;
+import environment.Environment;
+import environment.FlatEnvironment;
+import operators.Directions;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Compares neighbor-expansion throughput of the int[][] Environment and FlatEnvironment.
+ * An operation expands every cell of the terrain once. An expansion visits the 8 neighbors of
+ * a cell, checks isValid and canMove, and evaluates the A* cost functions for each feasible
+ * neighbor, as the search engines do.
+ *
+ * JMH forks a JVM per layout, so that the JIT profile of one layout does not slow down the
+ * other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+
+  @Param({"nested", "flat"})
+  public String layout;
+
+  @Param({"1000", "4000"})
+  public int size;
+
+  private Environment env;
+  private CostFunction[] costFunctions;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[][] terrain = TerrainGenerator.generate(size, size, 0.3, 0.5, 10, 100, 7);
+    env = new Environment(terrain, size, size, 5);
+    if (layout.equals("flat")) {
+      env = new FlatEnvironment(env);
+    }
+    costFunctions = new CostFunction[] {new MoveCostFunction(), new SteepnessCostFunction(env),
+        new MuddinessCostFunction(env)};
+  }
+
+  /**
+   * Expands every cell of env once.
+   * @return sum of the costs of all feasible moves
+   */
+  @Benchmark
+  public long expandAll() {
+    long total = 0;
+    for (int x = 0; x < env.getNRows(); x++) {
+      for (int y = 0; y < env.getNColumns(); y++) {
+        for (int d = 0; d < Directions.COUNT; d++) {
+          int nextX = x + Directions.DX[d];
+          int nextY = y + Directions.DY[d];
+          if (!env.isValid(nextX, nextY) || !env.canMove(x, y, nextX, nextY)) {
+            continue;
+          }
+          for (CostFunction cf : costFunctions) {
+            total += cf.cost(x, y, nextX, nextY);
+          }
+        }
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,107 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import search.SearchListener;
+import search.SearchMetrics;
+import state.State;
+import strategy.SearchContext;
+import strategy.SearchFactory;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Runs A* with each of the given heuristics over every bundled testcase and input.txt, and
+ * prints the nodes expanded per testcase and in total. Every heuristic must find paths of the
+ * same cost as the first one, or the report fails.
+ *
+ * Usage: java -cp benchmarks.jar benchmark.ExpansionReport [--engine=E] [--home=DIR]
+ * [heuristic]...
+ * The heuristics default to euclidean, octile and octile+steepness.
+ */
+public class ExpansionReport {
+
+  public static void main(String... args) throws IOException {
+    String engine = "default";
+    String home = ".";
+    ArrayList<String> heuristics = new ArrayList<String>();
+    for (String arg : args) {
+      if (arg.startsWith("--engine=")) {
+        engine = arg.substring("--engine=".length());
+      } else if (arg.startsWith("--home=")) {
+        home = arg.substring("--home=".length());
+      } else {
+        heuristics.add(arg);
+      }
+    }
+    if (heuristics.isEmpty()) {
+      heuristics.addAll(Arrays.asList(SearchFactory.EUCLIDEAN_HEURISTIC,
+          SearchFactory.OCTILE_HEURISTIC,
+          SearchFactory.OCTILE_HEURISTIC + "+" + SearchFactory.STEEPNESS_HEURISTIC));
+    }
+
+    ArrayList<File> files = new ArrayList<File>();
+    files.add(new File(home, "input.txt"));
+    File[] testcases = new File(home, "testcases/input").listFiles();
+    if (testcases == null) {
+      System.err.println("No testcases under " + new File(home, "testcases/input"));
+      System.exit(1);
+    }
+    Arrays.sort(testcases);
+    files.addAll(Arrays.asList(testcases));
+
+    StringBuilder header = new StringBuilder(String.format("%-16s %5s", "testcase", "goals"));
+    for (String heuristic : heuristics) {
+      header.append(String.format(" %18s", heuristic));
+    }
+    System.out.println(header);
+
+    long[] totals = new long[heuristics.size()];
+    for (File file : files) {
+      Testcase problem = Testcase.load(file.getPath());
+      StringBuilder row = new StringBuilder(String.format("%-16s %5d", file.getName(),
+          problem.goalStates.size()));
+      ArrayList<Long> expectedCosts = null;
+      for (int i = 0; i < heuristics.size(); i++) {
+        final long[] expanded = new long[1];
+        SearchContext context = new SearchContext();
+        context.setListener(new SearchListener() {
+          public void queryFinished(SearchMetrics metrics) {
+          }
+
+          public void batchFinished(SearchMetrics summary) {
+            expanded[0] = summary.getExpanded();
+          }
+        });
+        context.setStrategy(SearchFactory.create(SearchFactory.ASTAR, engine, heuristics.get(i),
+            problem.env));
+        context.setQuiet(true);
+        //Path costs, to compare heuristics.
+        ArrayList<Long> costs = new ArrayList<Long>();
+        for (ArrayList<State> path : context.search(problem.startState, problem.goalStates)) {
+          costs.add(Testcase.cost(problem.env, path));
+        }
+        if (expectedCosts == null) {
+          expectedCosts = costs;
+        } else if (expectedCosts.equals(costs) == false) {
+          throw new IllegalStateException(heuristics.get(i) + " changed the path costs of "
+              + file.getName());
+        }
+        totals[i] += expanded[0];
+        row.append(String.format(" %18d", expanded[0]));
+      }
+      System.out.println(row);
+    }
+
+    StringBuilder total = new StringBuilder(String.format("%-16s %5s", "total", ""));
+    StringBuilder ratio = new StringBuilder(String.format("%-16s %5s", "vs first", ""));
+    for (int i = 0; i < totals.length; i++) {
+      total.append(String.format(" %18d", totals[i]));
+      ratio.append(String.format(" %17.1f%%", 100.0 * totals[i] / totals[0]));
+    }
+    System.out.println(total);
+    System.out.println(ratio);
+  }
+}
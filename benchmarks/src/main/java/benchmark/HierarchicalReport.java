@@ -0,0 +1,120 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import environment.Environment;
+import environment.ReachabilityIndex;
+import search.HierarchicalSearch;
+import search.Search;
+import state.State;
+import strategy.SearchFactory;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Compares HierarchicalSearch with optimal A* on a synthetic terrain from TerrainGenerator.
+ * Random start and goal pairs that are connected are searched with both, and the report prints
+ * the time to build the abstract graph, its size, the time per query and how much more the
+ * hierarchical paths cost. Optimal costs come from GridAStarSearch, which finds paths of the
+ * same cost as AStarSearch and is fast enough on large terrains.
+ *
+ * Usage: java -cp benchmarks.jar benchmark.HierarchicalReport [--size=N] [--queries=Q]
+ * [--rocks=D] [--mud=D] [--seed=S] [--heuristic=H] [cluster size]...
+ * The cluster sizes default to 16, 32 and 64.
+ */
+public class HierarchicalReport {
+
+  public static void main(String... args) {
+    int size = 2000;
+    int queries = 100;
+    double rockDensity = 0.2;
+    double mudDensity = 0.5;
+    long seed = SyntheticSearchBenchmark.SEED;
+    String heuristic = SearchFactory.OCTILE_HEURISTIC;
+    ArrayList<Integer> clusterSizes = new ArrayList<Integer>();
+    for (String arg : args) {
+      if (arg.startsWith("--size=")) {
+        size = Integer.parseInt(arg.substring("--size=".length()));
+      } else if (arg.startsWith("--queries=")) {
+        queries = Integer.parseInt(arg.substring("--queries=".length()));
+      } else if (arg.startsWith("--rocks=")) {
+        rockDensity = Double.parseDouble(arg.substring("--rocks=".length()));
+      } else if (arg.startsWith("--mud=")) {
+        mudDensity = Double.parseDouble(arg.substring("--mud=".length()));
+      } else if (arg.startsWith("--seed=")) {
+        seed = Long.parseLong(arg.substring("--seed=".length()));
+      } else if (arg.startsWith("--heuristic=")) {
+        heuristic = arg.substring("--heuristic=".length());
+      } else {
+        clusterSizes.add(Integer.parseInt(arg));
+      }
+    }
+    if (clusterSizes.isEmpty()) {
+      clusterSizes.add(16);
+      clusterSizes.add(32);
+      clusterSizes.add(64);
+    }
+
+    Environment env = new Environment(TerrainGenerator.generate(size, size, rockDensity,
+        mudDensity, SyntheticSearchBenchmark.MAX_HEIGHT, SyntheticSearchBenchmark.MAX_MUD, seed),
+        size, size, SyntheticSearchBenchmark.MAX_CLIMB_HEIGHT);
+    ReachabilityIndex reachability = ReachabilityIndex.build(env);
+    Random random = new Random(seed);
+    ArrayList<State> starts = new ArrayList<State>();
+    ArrayList<State> goals = new ArrayList<State>();
+    while (starts.size() < queries) {
+      State start = new State(random.nextInt(size), random.nextInt(size));
+      State goal = new State(random.nextInt(size), random.nextInt(size));
+      if (reachability.isReachable(start, goal)) {
+        starts.add(start);
+        goals.add(goal);
+      }
+    }
+    System.out.println(String.format("%dx%d terrain, rocks %.2f, mud %.2f, %d connected queries,"
+        + " heuristic %s", size, size, rockDensity, mudDensity, queries, heuristic));
+
+    //Paths are costed here, so the searches need not print their costs.
+    long[] optimal = new long[queries];
+    Search astar = SearchFactory.create(SearchFactory.ASTAR, SearchFactory.GRID_ENGINE,
+        heuristic, env);
+    astar.setQuiet(true);
+    long begin = System.nanoTime();
+    for (int i = 0; i < queries; i++) {
+      astar.reset();
+      optimal[i] = Testcase.cost(env, astar.search(starts.get(i), goals.get(i)));
+    }
+    long optimalNanos = System.nanoTime() - begin;
+    System.out.println(String.format("%-10s %10s %8s %9s %12s %10s %10s %9s", "engine",
+        "build ms", "nodes", "edges", "ms/query", "speedup", "mean cost", "max cost"));
+    System.out.println(String.format("%-10s %10s %8s %9s %12.2f %10s %10s %9s", "grid A*", "-",
+        "-", "-", optimalNanos / 1e6 / queries, "1.0x", "1.000", "1.000"));
+
+    for (int clusterSize : clusterSizes) {
+      begin = System.nanoTime();
+      HierarchicalSearch hpa = new HierarchicalSearch(env, SearchFactory.operators(),
+          SearchFactory.costFunctions(SearchFactory.ASTAR, env),
+          SearchFactory.heuristics(heuristic, env), clusterSize);
+      long buildNanos = System.nanoTime() - begin;
+      hpa.setQuiet(true);
+      double ratioSum = 0;
+      double ratioMax = 0;
+      begin = System.nanoTime();
+      long[] costs = new long[queries];
+      for (int i = 0; i < queries; i++) {
+        hpa.reset();
+        costs[i] = Testcase.cost(env, hpa.search(starts.get(i), goals.get(i)));
+      }
+      long searchNanos = System.nanoTime() - begin;
+      for (int i = 0; i < queries; i++) {
+        double ratio = optimal[i] == 0 ? 1 : (double) costs[i] / optimal[i];
+        ratioSum += ratio;
+        ratioMax = Math.max(ratioMax, ratio);
+      }
+      System.out.println(String.format("%-10s %10.0f %8d %9d %12.2f %9.1fx %10.3f %9.3f%s",
+          "hpa:" + clusterSize, buildNanos / 1e6, hpa.getAbstractNodes(),
+          hpa.getAbstractEdges(), searchNanos / 1e6 / queries,
+          (double) optimalNanos / searchNanos, ratioSum / queries, ratioMax,
+          hpa.getFallbacks() > 0 ? "  (" + hpa.getFallbacks() + " fallbacks)" : ""));
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import costfunction.CostFunction;
+import costfunction.MoveCostFunction;
+import costfunction.MuddinessCostFunction;
+import costfunction.SteepnessCostFunction;
+import environment.Environment;
+import search.BucketQueue;
+import search.CellQueue;
+import search.IndexedMinHeap;
+import strategy.SearchFactory;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Compares the running queue used by UCS and A* before and after IndexedMinHeap.
+ * Both variants run the same Dijkstra sweep over a muddy terrain. The legacy variant
+ * re-prioritises with PriorityQueue.remove + offer, which is a linear scan per relaxation.
+ * The indexed variant uses IndexedMinHeap.decreaseKey, and the bucket variant a BucketQueue
+ * with one bucket per cost up to the dearest move. All return the sum of the costs of all
+ * reachable cells, which must agree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+  static final int[] DX = {-1, -1, 0, 1, 1, 1, 0, -1};
+  static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+  static class Entry {
+    final int cell;
+    final long cost;
+
+    Entry(int cell, long cost) {
+      this.cell = cell;
+      this.cost = cost;
+    }
+
+    @Override
+    public int hashCode() {
+      return cell;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Entry && ((Entry) obj).cell == cell;
+    }
+  }
+
+  @Param({"400", "1000"})
+  public int size;
+
+  private Environment env;
+  private CostFunction[] costFunctions;
+  private int start;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[][] terrain = TerrainGenerator.generate(size, size, 0.2, 0.7, 5, 100, 42);
+    env = new Environment(terrain, size, size, 3);
+    costFunctions = new CostFunction[] {new MoveCostFunction(), new SteepnessCostFunction(env),
+        new MuddinessCostFunction(env)};
+    start = (size / 2) * size + size / 2;
+  }
+
+  @Benchmark
+  public long indexedMinHeap() {
+    return heapSweep(env, costFunctions, start, new IndexedMinHeap(size * size));
+  }
+
+  @Benchmark
+  public long bucketQueue() {
+    return heapSweep(env, costFunctions, start,
+        new BucketQueue(size * size, SearchFactory.maxMoveCost(SearchFactory.ASTAR, env)));
+  }
+
+  @Benchmark
+  public long priorityQueueRemove() {
+    return legacySweep(env, costFunctions, start);
+  }
+
+  /**
+   * @return sum of costs of all reachable cells
+   */
+  static long heapSweep(Environment env, CostFunction[] costFunctions, int start,
+      CellQueue queue) {
+    int cols = env.getNColumns();
+    long[] cost = new long[env.getNRows() * cols];
+    Arrays.fill(cost, Long.MAX_VALUE);
+    cost[start] = 0;
+    queue.insert(start, 0);
+    long checksum = 0;
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      checksum += cost[node];
+      int x = node / cols;
+      int y = node % cols;
+      for (int d = 0; d < DX.length; d++) {
+        int nextX = x + DX[d];
+        int nextY = y + DY[d];
+        if (!env.isValid(nextX, nextY) || !env.canMove(x, y, nextX, nextY)) {
+          continue;
+        }
+        int child = nextX * cols + nextY;
+        long childCost = cost[node];
+        for (CostFunction cf : costFunctions) {
+          childCost += cf.cost(x, y, nextX, nextY);
+        }
+        if (childCost < cost[child]) {
+          cost[child] = childCost;
+          queue.insertOrDecrease(child, childCost);
+        }
+      }
+    }
+    return checksum;
+  }
+
+  /**
+   * @return sum of costs of all reachable cells
+   */
+  static long legacySweep(Environment env, CostFunction[] costFunctions, int start) {
+    int cols = env.getNColumns();
+    long[] cost = new long[env.getNRows() * cols];
+    Arrays.fill(cost, Long.MAX_VALUE);
+    boolean[] closed = new boolean[cost.length];
+    PriorityQueue<Entry> queue = new PriorityQueue<Entry>(new Comparator<Entry>() {
+      public int compare(Entry e1, Entry e2) {
+        return Long.compare(e1.cost, e2.cost);
+      }
+    });
+    cost[start] = 0;
+    queue.offer(new Entry(start, 0));
+    long checksum = 0;
+    while (!queue.isEmpty()) {
+      int node = queue.poll().cell;
+      closed[node] = true;
+      checksum += cost[node];
+      int x = node / cols;
+      int y = node % cols;
+      for (int d = 0; d < DX.length; d++) {
+        int nextX = x + DX[d];
+        int nextY = y + DY[d];
+        if (!env.isValid(nextX, nextY) || !env.canMove(x, y, nextX, nextY)) {
+          continue;
+        }
+        int child = nextX * cols + nextY;
+        long childCost = cost[node];
+        for (CostFunction cf : costFunctions) {
+          childCost += cf.cost(x, y, nextX, nextY);
+        }
+        if (!closed[child] && childCost < cost[child]) {
+          Entry entry = new Entry(child, childCost);
+          if (cost[child] != Long.MAX_VALUE) {
+            queue.remove(entry);
+          }
+          cost[child] = childCost;
+          queue.offer(entry);
+        }
+      }
+    }
+    return checksum;
+  }
+}
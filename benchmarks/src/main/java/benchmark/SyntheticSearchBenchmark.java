@@ -0,0 +1,93 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import environment.Environment;
+import strategy.SearchContext;
+import strategy.SearchFactory;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Searches a synthetic square terrain, generated once per trial by TerrainGenerator.
+ * The query runs diagonally over span cells from near the middle of the terrain, so the same
+ * query is timed on every size and the cost of the size itself (allocation, resets, cache
+ * misses) is what changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SyntheticSearchBenchmark {
+  //Rocks are between 1 and MAX_HEIGHT high, so about half of them are too high to climb.
+  static final int MAX_HEIGHT = 10;
+  static final int MAX_CLIMB_HEIGHT = 5;
+  static final int MAX_MUD = 100;
+  static final long SEED = 42;
+
+  @Param({"1000", "4000", "10000"})
+  public int size;
+
+  @Param({"0.2"})
+  public double rockDensity;
+
+  @Param({"0.5"})
+  public double mudDensity;
+
+  //Length of the query along each axis, capped by the size of the terrain.
+  @Param({"200"})
+  public int span;
+
+  @Param({SearchFactory.BFS, SearchFactory.UCS, SearchFactory.ASTAR})
+  public String algorithm;
+
+  //"grid", "bidirectional" or "jps" select the array backed engines for UCS and A*.
+  @Param({"default", "grid"})
+  public String engine;
+
+  //A* heuristics, for example "octile+steepness".
+  @Param({SearchFactory.EUCLIDEAN_HEURISTIC})
+  public String heuristic;
+
+  private SearchContext context;
+  private state.State startState;
+  private ArrayList<state.State> goalStates;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[][] terrain = TerrainGenerator.generate(size, size, rockDensity, mudDensity, MAX_HEIGHT,
+        MAX_MUD, SEED);
+    int length = Math.min(span, size - 1);
+    int start = (size - length) / 2;
+    //Start and goal are flat, so that the query does not fail on its end points.
+    terrain[start][start] = 0;
+    terrain[start + length][start + length] = 0;
+    Environment env = new Environment(terrain, size, size, MAX_CLIMB_HEIGHT);
+    startState = new state.State(start, start);
+    goalStates = new ArrayList<state.State>();
+    goalStates.add(new state.State(start + length, start + length));
+    context = new SearchContext();
+    context.setStrategy(SearchFactory.create(algorithm, engine, heuristic, env));
+    context.setQuiet(true);
+  }
+
+  @Benchmark
+  public ArrayList<ArrayList<state.State>> search() {
+    return context.search(startState, goalStates);
+  }
+}
@@ -0,0 +1,39 @@
+package benchmark;
+
+import java.util.Random;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Generates synthetic terrains for benchmarks.
+ * A cell is a rock with probability rockDensity, muddy with probability mudDensity and
+ * flat (0) otherwise.
+ */
+public class TerrainGenerator {
+
+  /**
+   * @param rows
+   * @param cols
+   * @param rockDensity : Fraction of rocky cells, in [0,1]
+   * @param mudDensity : Fraction of muddy cells, in [0,1 - rockDensity]
+   * @param maxHeight : Rocks are between 1 and maxHeight high
+   * @param maxMud : Mud is between 1 and maxMud deep
+   * @param seed
+   * @return terrain in the same layout as SearchAgent.terrain
+   */
+  public static int[][] generate(int rows, int cols, double rockDensity, double mudDensity,
+      int maxHeight, int maxMud, long seed) {
+    Random random = new Random(seed);
+    int[][] terrain = new int[rows][cols];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        double r = random.nextDouble();
+        if (r < rockDensity) {
+          terrain[i][j] = -(1 + random.nextInt(maxHeight));
+        } else if (r < rockDensity + mudDensity) {
+          terrain[i][j] = 1 + random.nextInt(maxMud);
+        }
+      }
+    }
+    return terrain;
+  }
+}
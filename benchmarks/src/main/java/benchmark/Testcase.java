@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import io.FastInputReader;
+import state.State;
+import strategy.SearchFactory;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * A search problem read from an input file in the format of SearchAgent.readInput.
+ */
+public class Testcase {
+  final String algorithm;
+  final Environment env;
+  final State startState;
+  final ArrayList<State> goalStates;
+
+  Testcase(String algorithm, Environment env, State startState, ArrayList<State> goalStates) {
+    this.algorithm = algorithm;
+    this.env = env;
+    this.startState = startState;
+    this.goalStates = goalStates;
+  }
+
+  /**
+   * @param path : Path of an input file
+   * @return the search problem in the file
+   * @throws IOException
+   */
+  static Testcase load(String path) throws IOException {
+    try (FastInputReader reader = new FastInputReader(path)) {
+      String algorithm = reader.readLine();
+      int cols = reader.nextInt();
+      int rows = reader.nextInt();
+      int startY = reader.nextInt();
+      int startX = reader.nextInt();
+      int maxClimbHeight = reader.nextInt();
+      int n = reader.nextInt();
+      ArrayList<State> goalStates = new ArrayList<State>();
+      for (int i = 0; i < n; i++) {
+        int y = reader.nextInt();
+        int x = reader.nextInt();
+        goalStates.add(new State(x, y));
+      }
+      int[][] terrain = new int[rows][cols];
+      reader.readTerrain(terrain, rows, cols);
+      return new Testcase(algorithm, new Environment(terrain, rows, cols, maxClimbHeight),
+          new State(startX, startY), goalStates);
+    }
+  }
+
+  /**
+   * @param env
+   * @param path
+   * @return the A* cost of path
+   */
+  static long cost(Environment env, ArrayList<State> path) {
+    long cost = 0;
+    ArrayList<CostFunction> costFunctions = SearchFactory.costFunctions(SearchFactory.ASTAR, env);
+    for (int i = 0; i + 1 < path.size(); i++) {
+      for (CostFunction cf : costFunctions) {
+        cost += cf.cost(path.get(i), path.get(i + 1));
+      }
+    }
+    return cost;
+  }
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import strategy.SearchContext;
+import strategy.SearchFactory;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Searches for every goal state of a bundled testcase. The testcase is loaded once per trial,
+ * and each operation is one SearchContext.search over all of its goal states, with the
+ * algorithm given by the algorithm parameter rather than the first line of the file.
+ *
+ * Testcases are read relative to the searchagent.home system property, which defaults to the
+ * working directory. "input" is the input.txt at the top of the repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestcaseSearchBenchmark {
+
+  @Param({"input", "astarsample", "sample", "ucssample",
+      "input1", "input2", "input3", "input4", "input5", "input6", "input7", "input8", "input9",
+      "input10", "input11", "input12", "input13", "input14", "input15", "input16", "input17",
+      "input18", "input19", "input20", "input21", "input22", "input23", "input24", "input25",
+      "input26", "input27", "input28", "input29", "input30", "input31", "input32", "input33",
+      "input34", "input35", "input36", "input37", "input38", "input39", "input40", "input41",
+      "input42", "input43", "input44", "input45", "input46", "input47", "input48", "input49",
+      "input50"})
+  public String testcase;
+
+  @Param({SearchFactory.BFS, SearchFactory.UCS, SearchFactory.ASTAR})
+  public String algorithm;
+
+  //"grid", "bidirectional" or "jps" select the array backed engines for UCS and A*.
+  @Param({"default"})
+  public String engine;
+
+  //A* heuristics, for example "octile+steepness".
+  @Param({SearchFactory.EUCLIDEAN_HEURISTIC})
+  public String heuristic;
+
+  private Testcase problem;
+  private SearchContext context;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    String home = System.getProperty("searchagent.home", ".");
+    File file = testcase.equals("input") ? new File(home, "input.txt")
+        : new File(new File(home, "testcases/input"), testcase + ".txt");
+    problem = Testcase.load(file.getPath());
+    context = new SearchContext();
+    context.setStrategy(SearchFactory.create(algorithm, engine, heuristic, problem.env));
+    context.setQuiet(true);
+  }
+
+  @Benchmark
+  public ArrayList<ArrayList<state.State>> search() {
+    return context.search(problem.startState, problem.goalStates);
+  }
+}
@@ -1,34 +1,27 @@
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Iterator;
-
-import costfunction.CostFunction;
-import costfunction.EuclideanCostFunction;
-import costfunction.IdentityCostFunction;
-import costfunction.MoveCostFunction;
-import costfunction.MuddinessCostFunction;
-import costfunction.SteepnessCostFunction;
+import java.util.concurrent.ForkJoinPool;
+
+import costfunction.LandmarkCostFunction;
 import environment.Environment;
-import operators.EastOperator;
-import operators.NorthEastOperator;
-import operators.NorthOperator;
-import operators.NorthWestOperator;
-import operators.Operator;
-import operators.SouthEastOperator;
-import operators.SouthOperator;
-import operators.SouthWestOperator;
-import operators.WestOperator;
-import search.BFSSearch;
+import environment.FlatEnvironment;
+import environment.ReachabilityIndex;
+import io.BinaryTerrain;
+import io.FastInputReader;
+import io.LandmarkFile;
+import io.PathWriter;
 import search.Search;
-import search.UCSSearch;
-import search.AStarSearch;
+import search.SearchListener;
+import search.SearchMetrics;
+import service.SearchService;
 import state.State;
+import strategy.PathCache;
+import strategy.PathListener;
 import strategy.SearchContext;
+import strategy.SearchFactory;
+import strategy.ShortestPathTreeCache;
 
 /**
  * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
@@ -39,9 +32,57 @@ import strategy.SearchContext;
  */
 public class SearchAgent {
 
-  public static final String BFS = "BFS";
-  public static final String UCS = "UCS";
-  public static final String ASTAR = "A*";
+  public static final String BFS = SearchFactory.BFS;
+  public static final String UCS = SearchFactory.UCS;
+  public static final String ASTAR = SearchFactory.ASTAR;
+  //Command line option that selects the search engine.
+  public static final String ENGINE_OPTION = "--engine=";
+  //Engine backed by primitive arrays instead of node objects and hash maps.
+  public static final String GRID_ENGINE = SearchFactory.GRID_ENGINE;
+  //Engine that searches from the start and the goal until the searches meet.
+  public static final String BIDIRECTIONAL_ENGINE = SearchFactory.BIDIRECTIONAL_ENGINE;
+  //Engine that jumps over flat regions of the terrain.
+  public static final String JPS_ENGINE = SearchFactory.JPS_ENGINE;
+  //Command line option that searches for all goal states in a single search.
+  public static final String MULTI_GOAL_OPTION = "--multi-goal";
+  //Command line option that searches for goal states concurrently on this many threads.
+  public static final String THREADS_OPTION = "--threads=";
+  //Command line option that prints load and search statistics to standard error.
+  public static final String STATS_OPTION = "--stats";
+  //Command line option that memory maps the terrain from a binary terrain file.
+  public static final String TERRAIN_OPTION = "--terrain=";
+  //Command line option that selects how the environment stores the terrain.
+  public static final String STORAGE_OPTION = "--storage=";
+  //Single row-major array with precomputed steepness and muddiness.
+  public static final String FLAT_STORAGE = "flat";
+  //Command line option that selects the A* heuristics, for example octile+steepness.
+  public static final String HEURISTIC_OPTION = "--heuristic=";
+  //Command line option that precomputes the move mask of every cell before searching.
+  public static final String MOVE_MASKS_OPTION = "--move-masks";
+  //Command line option that sets the number of landmarks of the landmarks heuristic.
+  public static final String LANDMARKS_OPTION = "--landmarks=";
+  //Command line option that loads the landmark tables from a file, or saves them to it.
+  public static final String LANDMARK_FILE_OPTION = "--landmark-file=";
+  //Command line option that keeps the terrain loaded and answers queries from standard input,
+  //or from a loopback socket with --serve=PORT, instead of input.txt. See SearchService.
+  public static final String SERVE_OPTION = "--serve";
+  //Command line option that serves at most this many connections at once with --serve=PORT.
+  public static final String SESSIONS_OPTION = "--sessions=";
+  //Command line option that caches up to this many paths, so repeated queries skip the search.
+  public static final String CACHE_OPTION = "--cache=";
+  //Command line option that keeps shortest path trees of frequent start states, up to this many
+  //MB. See ShortestPathTreeCache.
+  public static final String TREE_BUDGET_OPTION = "--tree-budget=";
+  //Command line option that sets how many batches from a start state come before its tree.
+  public static final String TREE_AFTER_OPTION = "--tree-after=";
+  //Command line option that labels the connected components of the terrain before searching,
+  //so that goal states walled off from the start state fail without a search.
+  public static final String REACHABILITY_OPTION = "--reachability";
+  //Command line option that compresses the output with gzip, into output.txt.gz.
+  public static final String GZIP_OPTION = "--gzip";
+  public static final String OUTPUT_FILE = "output.txt";
+  //Largest port of --serve=PORT.
+  private static final int MAX_PORT = 65535;
   int rows;
   int cols;
   int maxClimbHeight;
@@ -50,6 +91,8 @@ public class SearchAgent {
   String algorithm;
   ArrayList<State> goalStates;
   State startState;
+  //Parse throughput of the last readInput
+  String loadReport;
 
 
   public SearchAgent() throws IOException {
@@ -67,44 +110,40 @@ public class SearchAgent {
    * 1 1   --> Goal state x and y coordinates respectively
    * 0 -10 --> Terrain starts here and continues till end of file
    *-10 -20
+   * @param readTerrain : false to stop after the goal states, when the terrain is loaded from a
+   * binary terrain file instead
    */
-  public void readInput() {
+  public void readInput(boolean readTerrain) {
     
-    try (BufferedReader br = new BufferedReader(new InputStreamReader(
-        new FileInputStream("./input.txt")))) {
+    try (FastInputReader reader = new FastInputReader("./input.txt")) {
       //Read algorithm type
-      algorithm = br.readLine();
+      algorithm = reader.readLine();
       
       //Read number of columns and number of rows in the terrain
-      String[] tokens = br.readLine().split(" ");
-      cols = Integer.parseInt(tokens[0]);
-      rows = Integer.parseInt(tokens[1]);
-      terrain = new int[rows][cols];
-
-      tokens = br.readLine().split(" ");
-      int starty = Integer.parseInt(tokens[0]);
-      int startx = Integer.parseInt(tokens[1]);
+      cols = reader.nextInt();
+      rows = reader.nextInt();
+
+      int starty = reader.nextInt();
+      int startx = reader.nextInt();
       startState = new State(startx, starty);
-      maxClimbHeight = Integer.parseInt(br.readLine());
-      N = Integer.parseInt(br.readLine());
+      maxClimbHeight = reader.nextInt();
+      N = reader.nextInt();
       //Read goal states
       for (int i = 0; i < N; i++) {
         int x, y;
-        tokens = br.readLine().split(" ");
-        y = Integer.parseInt(tokens[0]);
-        x = Integer.parseInt(tokens[1]);
+        y = reader.nextInt();
+        x = reader.nextInt();
         State c = new State(x, y);
-        // System.out.println(c);
         goalStates.add(c);
       }
 
       //Read terrain entries
-      for (int i = 0; i < rows; i++) {
-        tokens = br.readLine().split("\\s+");
-        for (int j = 0; j < cols; j++) {
-          terrain[i][j] = Integer.parseInt(tokens[j]);
-        }
+      if (readTerrain) {
+        terrain = new int[rows][cols];
+        reader.readTerrain(terrain, rows, cols);
       }
+      loadReport = String.format("Loaded %d bytes in %.1f ms (%.1f MB/s)", reader.getBytesRead(),
+          reader.getElapsedNanos() / 1e6, reader.getThroughput());
     } catch (IOException ioe) {
       ioe.printStackTrace();
     }
@@ -118,92 +157,317 @@ public class SearchAgent {
    * @throws IOException
    */
   public void writeOutput(ArrayList<ArrayList<State>> searchResult) throws IOException {
-    PrintStream ps = null;
-    StringBuilder sb = null;
-    try {
-      //Fixed output file for now. Can be accepted as a param if required.
-      ps = new PrintStream(new FileOutputStream("output.txt", false));
-      sb = new StringBuilder();
-
-      //Write the result into sb, and subsequently to a file.
+    //Fixed output file for now. Can be accepted as a param if required.
+    try (PathWriter writer = PathWriter.open(OUTPUT_FILE, false)) {
       for (ArrayList<State> result : searchResult) {
-        //No path found from start state to goal state.
-        if (result.isEmpty()) {
-          sb.append("FAIL\n");
-        } else {
-          //Path found. Iterate over the path and extract x,y coordinates.
-          Iterator<State> itr = result.iterator();
-          while (itr.hasNext()) {
-            State c = itr.next();
-            sb.append(c.getY() + "," + c.getX());
-            if (itr.hasNext()) {
-              sb.append(" ");
-            } else
-              sb.append("\n");
-          }
-
-        }
-
+        //A path, or FAIL if no path was found from start state to goal state.
+        writer.write(result);
       }
-      //Delete extra \n at the end.
-      sb.deleteCharAt(sb.length() - 1);
-      //Write the result to the output file.
-      ps.print(sb);
-    } catch (Exception e) {
-      e.printStackTrace();
     }
-
   }
 
   public static void main(String... strings) throws IOException {
     
+    String engine = "";
+    boolean multiGoal = false;
+    int threads = 0;
+    boolean stats = false;
+    String terrainFile = null;
+    String storage = "";
+    boolean moveMasks = false;
+    String heuristic = SearchFactory.EUCLIDEAN_HEURISTIC;
+    int landmarkCount = LandmarkCostFunction.DEFAULT_LANDMARKS;
+    String landmarkFile = null;
+    boolean serve = false;
+    int port = 0;
+    int maxSessions = SearchService.DEFAULT_MAX_SESSIONS;
+    int cacheCapacity = 0;
+    long treeBudget = 0;
+    int treeAfter = 2;
+    boolean labelComponents = false;
+    boolean gzip = false;
+    try {
+      for (String option : strings) {
+        if (option.startsWith(ENGINE_OPTION)) {
+          engine = option.substring(ENGINE_OPTION.length());
+        } else if (option.equals(MULTI_GOAL_OPTION)) {
+          multiGoal = true;
+        } else if (option.startsWith(THREADS_OPTION)) {
+          threads = positive(THREADS_OPTION, "N", option);
+        } else if (option.equals(STATS_OPTION)) {
+          stats = true;
+        } else if (option.startsWith(TERRAIN_OPTION)) {
+          terrainFile = option.substring(TERRAIN_OPTION.length());
+        } else if (option.startsWith(STORAGE_OPTION)) {
+          storage = option.substring(STORAGE_OPTION.length());
+        } else if (option.equals(MOVE_MASKS_OPTION)) {
+          moveMasks = true;
+        } else if (option.startsWith(HEURISTIC_OPTION)) {
+          heuristic = option.substring(HEURISTIC_OPTION.length());
+        } else if (option.startsWith(LANDMARKS_OPTION)) {
+          landmarkCount = positive(LANDMARKS_OPTION, "N", option);
+        } else if (option.startsWith(LANDMARK_FILE_OPTION)) {
+          landmarkFile = option.substring(LANDMARK_FILE_OPTION.length());
+        } else if (option.startsWith(CACHE_OPTION)) {
+          cacheCapacity = positive(CACHE_OPTION, "N", option);
+        } else if (option.startsWith(TREE_BUDGET_OPTION)) {
+          treeBudget = megabytes(TREE_BUDGET_OPTION, option);
+        } else if (option.startsWith(TREE_AFTER_OPTION)) {
+          treeAfter = positive(TREE_AFTER_OPTION, "N", option);
+        } else if (option.equals(REACHABILITY_OPTION)) {
+          labelComponents = true;
+        } else if (option.equals(GZIP_OPTION)) {
+          gzip = true;
+        } else if (option.equals(SERVE_OPTION)) {
+          serve = true;
+        } else if (option.startsWith(SERVE_OPTION + "=")) {
+          serve = true;
+          port = positive(SERVE_OPTION + "=", "PORT", option);
+          if (port > MAX_PORT) {
+            throw new IllegalArgumentException(SERVE_OPTION + "=PORT. PORT must be at most "
+                + MAX_PORT + ", got " + port);
+          }
+        } else if (option.startsWith(SESSIONS_OPTION)) {
+          maxSessions = positive(SESSIONS_OPTION, "N", option);
+        }
+      }
+    } catch (IllegalArgumentException iae) {
+      exitWithUsage(iae.getMessage());
+    }
+    //Reject a misspelt engine or heuristic before loading the terrain, instead of running the
+    //default engine or failing in the middle of the run.
+    try {
+      SearchFactory.checkEngine(engine);
+    } catch (IllegalArgumentException iae) {
+      exitWithUsage(ENGINE_OPTION + "ENGINE. " + iae.getMessage());
+    }
+    try {
+      SearchFactory.checkHeuristic(heuristic);
+    } catch (IllegalArgumentException iae) {
+      exitWithUsage(HEURISTIC_OPTION + "NAMES. " + iae.getMessage());
+    }
+
     SearchAgent agent = new SearchAgent();
-    //Read input file and construct required params.
-    agent.readInput();
-    
-    Environment env = new Environment(agent.terrain, agent.rows, agent.cols, agent.maxClimbHeight);
+    //Read input file and construct required params. A service with a binary terrain file does
+    //not need input.txt, as queries bring their own algorithm and states.
+    if (serve == false || terrainFile == null) {
+      agent.readInput(terrainFile == null);
+      if (stats) {
+        System.err.println(agent.loadReport);
+      }
+    }
     
-    //By default, include opertors for 8 directions.
-    ArrayList<Operator> operators = new ArrayList<Operator>();
-    operators.add(new NorthOperator());
-    operators.add(new NorthEastOperator());
-    operators.add(new EastOperator());
-    operators.add(new SouthEastOperator());
-    operators.add(new SouthOperator());
-    operators.add(new SouthWestOperator());
-    operators.add(new WestOperator());
-    operators.add(new NorthWestOperator());
-
-    Search search;
-    if (agent.algorithm.equalsIgnoreCase(BFS)) {
-      ArrayList<CostFunction> costFunctions = new ArrayList<CostFunction>();
-      //Cost of moving from current state to next state is a constant. 
-      costFunctions.add(new IdentityCostFunction());
-      search = new BFSSearch(env, operators, costFunctions);
-    } else if (agent.algorithm.equalsIgnoreCase(UCS)) {
-      ArrayList<CostFunction> costFunctions = new ArrayList<CostFunction>();
-      //For UCS, cost is calculated based on approximate move distance.
-      costFunctions.add(new MoveCostFunction());
-      search = new UCSSearch(env, operators, costFunctions);
+    Environment env;
+    boolean flat = storage.equalsIgnoreCase(FLAT_STORAGE);
+    if (terrainFile != null) {
+      //Dimensions and max climb height come from the binary terrain file.
+      env = BinaryTerrain.map(terrainFile);
+      if (flat) {
+        env = new FlatEnvironment(env);
+      }
+    } else if (flat) {
+      env = new FlatEnvironment(agent.terrain, agent.rows, agent.cols, agent.maxClimbHeight);
+      //The flat arrays are a copy, so the map can go.
+      agent.terrain = null;
     } else {
-      ArrayList<CostFunction> costFunctions = new ArrayList<CostFunction>();
-      ArrayList<CostFunction> heuristicCostFunctions = new ArrayList<CostFunction>();
-      //For A*, cost is move cost + steepness cost + muddiness cost and heuristic is Euclidean.
-      costFunctions.add(new MoveCostFunction());
-      costFunctions.add(new SteepnessCostFunction(env));
-      costFunctions.add(new MuddinessCostFunction(env));
-      heuristicCostFunctions.add(new EuclideanCostFunction());
-      search = new AStarSearch(env, operators, costFunctions, heuristicCostFunctions);
+      env = new Environment(agent.terrain, agent.rows, agent.cols, agent.maxClimbHeight);
+    }
+    if (moveMasks) {
+      env.buildMoveMasks();
+    }
+    
+    ReachabilityIndex reachability = null;
+    if (labelComponents) {
+      long begin = System.nanoTime();
+      reachability = ReachabilityIndex.build(env);
+      if (stats) {
+        System.err.println(String.format("Reachability: %d components labeled in %.1f ms",
+            reachability.getComponentCount(), (System.nanoTime() - begin) / 1e6));
+      }
+    }
+
+    LandmarkCostFunction landmarks = null;
+    if ((serve || (agent.algorithm.equalsIgnoreCase(BFS) == false
+        && agent.algorithm.equalsIgnoreCase(UCS) == false))
+        && ("+" + heuristic + "+").toLowerCase().contains(
+            "+" + SearchFactory.LANDMARK_HEURISTIC + "+")) {
+      long begin = System.nanoTime();
+      String source = null;
+      String costModel = SearchFactory.costModel(ASTAR, env);
+      if (landmarkFile != null && new File(landmarkFile).exists()) {
+        try {
+          landmarks = LandmarkFile.read(landmarkFile, env, costModel);
+          source = "read from " + landmarkFile;
+        } catch (IOException ioe) {
+          //Stale tables would make the heuristic inadmissible. Build them again instead.
+          System.err.println("Landmarks: " + ioe.getMessage() + ", rebuilding it");
+        }
+      }
+      if (landmarks == null) {
+        landmarks = SearchFactory.landmarks(env, landmarkCount);
+        source = "built";
+        if (landmarkFile != null) {
+          LandmarkFile.write(landmarkFile, landmarks, env, costModel);
+          source = "built and written to " + landmarkFile;
+        }
+      }
+      if (stats) {
+        System.err.println(String.format("Landmarks: %d %s in %.1f ms",
+            landmarks.getLandmarks().length, source, (System.nanoTime() - begin) / 1e6));
+      }
+    }
+
+    final PathCache cache = cacheCapacity > 0 ? new PathCache(env, cacheCapacity) : null;
+    final ShortestPathTreeCache treeCache = treeBudget > 0
+        ? new ShortestPathTreeCache(env, treeBudget, treeAfter) : null;
+    SearchListener listener = null;
+    if (stats) {
+      listener = new SearchListener() {
+        public void queryFinished(SearchMetrics metrics) {
+          System.err.println("Search: " + metrics);
+        }
+
+        public void batchFinished(SearchMetrics summary) {
+          System.err.println("Batch: " + summary);
+          if (cache != null) {
+            System.err.println("Cache: " + cache);
+          }
+          if (treeCache != null) {
+            System.err.println("Trees: " + treeCache);
+          }
+        }
+      };
+    }
+    ForkJoinPool pool = null;
+    if (threads > 0) {
+      pool = new ForkJoinPool(threads);
     }
 
+    if (serve) {
+      final SearchService service = new SearchService(env, engine, heuristic, landmarks);
+      service.setMultiGoal(multiGoal);
+      service.setExecutor(pool);
+      service.setListener(listener);
+      service.setCache(cache);
+      service.setTreeCache(treeCache);
+      service.setReachability(reachability);
+      service.setMaxSessions(maxSessions);
+      try {
+        if (port > 0) {
+          //On Ctrl-C or kill, stop listening and wait for the service to be closed below.
+          final Thread main = Thread.currentThread();
+          Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+              service.stop();
+              try {
+                main.join();
+              } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          });
+          service.listen(port);
+        } else {
+          service.serve(System.in, System.out);
+        }
+      } finally {
+        service.close();
+        if (pool != null) {
+          pool.shutdown();
+        }
+      }
+      return;
+    }
+
+    //Operators for the 8 directions and the cost model of the algorithm.
+    Search search = SearchFactory.create(agent.algorithm, engine, heuristic, landmarks, env);
+
     //Strategy pattern.
     SearchContext context = new SearchContext();
     context.setStrategy(search);
+    context.setMultiGoal(multiGoal);
+    context.setListener(listener);
+    context.setExecutor(pool);
+    if (cache != null) {
+      context.setCache(cache, SearchFactory.costModel(agent.algorithm, env));
+    }
+    if (treeCache != null) {
+      context.setTreeCache(treeCache, agent.algorithm);
+    }
+    context.setReachability(reachability);
+
+    //Search for the goal states, and write each path to the output file as soon as it is found.
+    final PathWriter writer = PathWriter.open(gzip ? OUTPUT_FILE + ".gz" : OUTPUT_FILE, gzip);
+    try {
+      context.search(agent.startState, agent.goalStates, new PathListener() {
+        public void pathFound(int goal, ArrayList<State> path) {
+          try {
+            writer.write(path);
+          } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+          }
+        }
+      });
+    } finally {
+      writer.close();
+      context.close();
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
 
-    //Search for the goal states.
-    ArrayList<ArrayList<State>> searchResults = context.search(agent.startState, agent.goalStates);
-    //Write path to a file (output.txt).
-    agent.writeOutput(searchResults);
+  }
+
+  /**
+   * @param option : Option name, such as THREADS_OPTION
+   * @param name : Name of the number in the usage of option
+   * @param argument : The whole command line argument, option name included
+   * @return the number after the option name
+   * @throws IllegalArgumentException with the usage of option if it is not a positive number
+   */
+  private static int positive(String option, String name, String argument) {
+    String value = argument.substring(option.length());
+    int number = 0;
+    try {
+      number = Integer.parseInt(value);
+    } catch (NumberFormatException nfe) {
+      //Reported below.
+    }
+    if (number <= 0) {
+      throw new IllegalArgumentException(option + name + ". " + name
+          + " must be a positive number, got " + value);
+    }
+    return number;
+  }
 
+  /**
+   * @param option : Option name, such as TREE_BUDGET_OPTION
+   * @param argument : The whole command line argument, option name included
+   * @return the number of MB after the option name, in bytes
+   * @throws IllegalArgumentException with the usage of option if it is not a positive number
+   */
+  private static long megabytes(String option, String argument) {
+    String value = argument.substring(option.length());
+    double megabytes = 0;
+    try {
+      megabytes = Double.parseDouble(value);
+    } catch (NumberFormatException nfe) {
+      //Reported below.
+    }
+    //Also false for NaN.
+    if ((megabytes > 0) == false) {
+      throw new IllegalArgumentException(option + "MB. MB must be a positive number, got "
+          + value);
+    }
+    return (long) (megabytes * (1 << 20));
+  }
+
+  /**
+   * Prints the usage of a command line option to standard error, and exits.
+   * @param usage : Option and what is wrong with it
+   */
+  private static void exitWithUsage(String usage) {
+    System.err.println("Usage: " + usage);
+    System.exit(1);
   }
 }
@@ -14,4 +14,17 @@ public interface CostFunction {
    * @return The cost incurred for a transition from currentState to nextState
    */
   long cost(State currentState, State nextState);
+
+  /**
+   * Coordinate based variant used by the array based search engines.
+   * Implementations should override this to avoid allocating states.
+   * @param x
+   * @param y
+   * @param nextX
+   * @param nextY
+   * @return The cost incurred for a transition from (x,y) to (nextX,nextY)
+   */
+  default long cost(int x, int y, int nextX, int nextY) {
+    return cost(new State(x, y), new State(nextX, nextY));
+  }
 }
@@ -15,4 +15,10 @@ public class EuclideanCostFunction implements CostFunction {
     dis = (long) Math.sqrt(dis);
     return dis;
   }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    long dis = (long) (x - nextX) * (x - nextX) + (long) (y - nextY) * (y - nextY);
+    return (long) Math.sqrt(dis);
+  }
 }
@@ -13,4 +13,9 @@ public class IdentityCostFunction implements CostFunction {
     return 1;
   }
 
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    return 1;
+  }
+
 }
@@ -0,0 +1,248 @@
+package costfunction;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+import environment.Environment;
+import environment.TerrainListener;
+import operators.Operator;
+import search.ShortestPathTree;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * ALT heuristic (A*, Landmarks, Triangle inequality). The exact cost from every cell to and
+ * from a few landmark cells is computed offline. For any landmark L, the triangle inequality
+ * gives two lower bounds on the cost of a path from v to t:
+ * cost(v, t) >= cost(v, L) - cost(t, L)
+ * cost(v, t) >= cost(L, t) - cost(L, v)
+ * The heuristic is the largest bound over all landmarks. It is admissible and consistent for
+ * the cost model the tables were built with, and bounds the whole path cost, so it must not be
+ * added to other heuristics. Use MaxCostFunction to combine it with them.
+ *
+ * Each landmark keeps two int tables of NROWS * NCOLUMNS entries, indexed by x * NCOLUMNS + y,
+ * so the heuristic takes 8 bytes per cell per landmark. Muddiness is charged on the entered
+ * cell, so costs to and from a landmark differ and both tables are needed. Cells that are not
+ * connected to a landmark, or whose cost does not fit in an int, hold UNKNOWN and give no bound.
+ *
+ * A change to the terrain can make the tables overstate costs. The heuristics built by build
+ * and LandmarkFile.read listen to the terrain and drop their tables on the first change, after
+ * which they give no bound until built again.
+ */
+public class LandmarkCostFunction implements CostFunction, TerrainListener {
+  public static final int UNKNOWN = Integer.MAX_VALUE;
+  public static final int DEFAULT_LANDMARKS = 8;
+
+  private final int nRows;
+  private final int nColumns;
+  //Landmark cells, x * NCOLUMNS + y. Empty once the tables are dropped.
+  private int[] landmarks;
+  //fromLandmark[i][v] = cost(landmarks[i], v)
+  private int[][] fromLandmark;
+  //toLandmark[i][v] = cost(v, landmarks[i])
+  private int[][] toLandmark;
+
+  /**
+   * @param nRows
+   * @param nColumns
+   * @param landmarks : Landmark cells, x * NCOLUMNS + y
+   * @param fromLandmark : Cost from each landmark to every cell
+   * @param toLandmark : Cost from every cell to each landmark
+   */
+  public LandmarkCostFunction(int nRows, int nColumns, int[] landmarks, int[][] fromLandmark,
+      int[][] toLandmark) {
+    this.nRows = nRows;
+    this.nColumns = nColumns;
+    this.landmarks = landmarks;
+    this.fromLandmark = fromLandmark;
+    this.toLandmark = toLandmark;
+  }
+
+  /**
+   * Chooses count landmarks on the perimeter of env and runs two Dijkstra sweeps from each of
+   * them. Sweeps run in parallel.
+   * @param env : The heuristic listens to its terrain.
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * @param costFunctions : Cost model of the searches that will use the heuristic
+   * @param count : Number of landmarks
+   * @return the heuristic
+   */
+  public static LandmarkCostFunction build(final Environment env,
+      final ArrayList<Operator> operators, final ArrayList<CostFunction> costFunctions,
+      int count) {
+    final int nColumns = env.getNColumns();
+    final int[] landmarks = perimeterLandmarks(env, count);
+    final int[][] fromLandmark = new int[landmarks.length][];
+    final int[][] toLandmark = new int[landmarks.length][];
+    //Sweep 2i is from landmark i, sweep 2i+1 is to it.
+    IntStream.range(0, 2 * landmarks.length).parallel().forEach(sweep -> {
+      int i = sweep / 2;
+      boolean reverse = sweep % 2 == 1;
+      State landmark = new State(landmarks[i] / nColumns, landmarks[i] % nColumns);
+      ShortestPathTree tree = ShortestPathTree.compute(env, operators, costFunctions, landmark,
+          reverse, false);
+      int[] table = compact(tree.getCosts());
+      if (reverse) {
+        toLandmark[i] = table;
+      } else {
+        fromLandmark[i] = table;
+      }
+    });
+    LandmarkCostFunction heuristic = new LandmarkCostFunction(env.getNRows(), nColumns,
+        landmarks, fromLandmark, toLandmark);
+    env.addTerrainListener(heuristic);
+    return heuristic;
+  }
+
+  /**
+   * Spreads landmarks evenly along the perimeter, clockwise from (0,0). Paths towards a goal
+   * tend to run away from a landmark behind it, which is when its bounds are tight. A landmark
+   * that falls on a cell the agent cannot leave is moved along the perimeter to the next cell
+   * it can leave.
+   * @param env
+   * @param count
+   * @return landmark cells, x * NCOLUMNS + y, at most one per perimeter cell
+   */
+  static int[] perimeterLandmarks(Environment env, int count) {
+    int nRows = env.getNRows();
+    int nColumns = env.getNColumns();
+    ArrayList<Integer> perimeter = new ArrayList<Integer>();
+    if (nRows == 1 || nColumns == 1) {
+      for (int x = 0; x < nRows; x++) {
+        for (int y = 0; y < nColumns; y++) {
+          perimeter.add(x * nColumns + y);
+        }
+      }
+    } else {
+      for (int y = 0; y < nColumns - 1; y++) {
+        perimeter.add(y);
+      }
+      for (int x = 0; x < nRows - 1; x++) {
+        perimeter.add(x * nColumns + nColumns - 1);
+      }
+      for (int y = nColumns - 1; y > 0; y--) {
+        perimeter.add((nRows - 1) * nColumns + y);
+      }
+      for (int x = nRows - 1; x > 0; x--) {
+        perimeter.add(x * nColumns);
+      }
+    }
+
+    count = Math.max(0, Math.min(count, perimeter.size()));
+    int[] landmarks = new int[count];
+    boolean[] taken = new boolean[perimeter.size()];
+    for (int i = 0; i < count; i++) {
+      int position = (int) ((long) i * perimeter.size() / count);
+      int chosen = -1;
+      for (int step = 0; step < perimeter.size(); step++) {
+        int candidate = (position + step) % perimeter.size();
+        if (taken[candidate] == false && canLeave(env, perimeter.get(candidate) / nColumns,
+            perimeter.get(candidate) % nColumns)) {
+          chosen = candidate;
+          break;
+        }
+      }
+      if (chosen == -1) {
+        //No perimeter cell can be left. Keep the spread position, it gives no bounds.
+        chosen = position;
+      }
+      taken[chosen] = true;
+      landmarks[i] = perimeter.get(chosen);
+    }
+    return landmarks;
+  }
+
+  /**
+   * @param env
+   * @param x
+   * @param y
+   * @return whether the agent can move from (x,y) to any neighbour
+   */
+  private static boolean canLeave(Environment env, int x, int y) {
+    for (int dx = -1; dx <= 1; dx++) {
+      for (int dy = -1; dy <= 1; dy++) {
+        if ((dx != 0 || dy != 0) && env.isValid(x + dx, y + dy)
+            && env.canMove(x, y, x + dx, y + dy)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param costs : Costs of a shortest path tree
+   * @return the costs as ints, UNKNOWN where they are unreachable or do not fit
+   */
+  private static int[] compact(long[] costs) {
+    int[] table = new int[costs.length];
+    for (int i = 0; i < costs.length; i++) {
+      table[i] = costs[i] >= UNKNOWN ? UNKNOWN : (int) costs[i];
+    }
+    return table;
+  }
+
+  /**
+   * Drops the tables, which would no longer be lower bounds. Called by Environment.setCell, so
+   * never while a search is running.
+   */
+  public void cellChanged(int x, int y, int oldValue, int newValue) {
+    landmarks = new int[0];
+    fromLandmark = new int[0][];
+    toLandmark = new int[0][];
+  }
+
+  @Override
+  public long cost(State currentState, State nextState) {
+    return cost(currentState.getX(), currentState.getY(), nextState.getX(), nextState.getY());
+  }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    int v = x * nColumns + y;
+    int t = nextX * nColumns + nextY;
+    long bound = 0;
+    for (int i = 0; i < landmarks.length; i++) {
+      int[] to = toLandmark[i];
+      if (to[v] != UNKNOWN && to[t] != UNKNOWN) {
+        bound = Math.max(bound, (long) to[v] - to[t]);
+      }
+      int[] from = fromLandmark[i];
+      if (from[t] != UNKNOWN && from[v] != UNKNOWN) {
+        bound = Math.max(bound, (long) from[t] - from[v]);
+      }
+    }
+    return bound;
+  }
+
+  public int getNRows() {
+    return nRows;
+  }
+
+  public int getNColumns() {
+    return nColumns;
+  }
+
+  /**
+   * @return landmark cells, x * NCOLUMNS + y. Not a copy.
+   */
+  public int[] getLandmarks() {
+    return landmarks;
+  }
+
+  /**
+   * @param i
+   * @return cost from landmark i to every cell. Not a copy.
+   */
+  public int[] getFromLandmark(int i) {
+    return fromLandmark[i];
+  }
+
+  /**
+   * @param i
+   * @return cost from every cell to landmark i. Not a copy.
+   */
+  public int[] getToLandmark(int i) {
+    return toLandmark[i];
+  }
+}
@@ -0,0 +1,43 @@
+package costfunction;
+
+import java.util.ArrayList;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * The largest of several heuristics. Each heuristic is a list of cost functions that are added
+ * up, as in the heuristicCostFunctions of a search. The maximum of admissible, consistent
+ * heuristics is admissible and consistent.
+ */
+public class MaxCostFunction implements CostFunction {
+  private final CostFunction[][] heuristics;
+
+  /**
+   * @param heuristics : Heuristics, each a list of cost functions that are added up
+   */
+  public MaxCostFunction(ArrayList<ArrayList<CostFunction>> heuristics) {
+    this.heuristics = new CostFunction[heuristics.size()][];
+    for (int i = 0; i < heuristics.size(); i++) {
+      this.heuristics[i] = heuristics.get(i).toArray(new CostFunction[0]);
+    }
+  }
+
+  @Override
+  public long cost(State currentState, State nextState) {
+    return cost(currentState.getX(), currentState.getY(), nextState.getX(), nextState.getY());
+  }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    long max = 0;
+    for (CostFunction[] heuristic : heuristics) {
+      long sum = 0;
+      for (CostFunction cf : heuristic) {
+        sum += cf.cost(x, y, nextX, nextY);
+      }
+      max = Math.max(max, sum);
+    }
+    return max;
+  }
+}
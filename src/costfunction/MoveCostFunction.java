@@ -24,4 +24,12 @@ public class MoveCostFunction implements CostFunction {
     return cost;
 
   }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    if (Math.abs(nextX - x) == 1 && Math.abs(nextY - y) == 1) {
+      return DIAGONALCOST;
+    }
+    return NONDIAGONALCOST;
+  }
 }
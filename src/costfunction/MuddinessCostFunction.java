@@ -18,4 +18,9 @@ public class MuddinessCostFunction implements CostFunction {
   public long cost(State currentState, State nextState) {
     return env.getMuddiness(nextState);
   }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    return env.getMuddiness(nextX, nextY);
+  }
 }
@@ -0,0 +1,27 @@
+package costfunction;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Octile distance on the scale of MoveCostFunction: the cost of the cheapest sequence of
+ * diagonal and straight moves between two cells on open ground.
+ * Distance = 14 * min(|x2-x1|, |y2-y1|) + 10 * (max(|x2-x1|, |y2-y1|) - min(|x2-x1|, |y2-y1|))
+ * It never overestimates the move cost, and is consistent.
+ */
+public class OctileCostFunction implements CostFunction {
+
+  @Override
+  public long cost(State currentState, State nextState) {
+    return cost(currentState.getX(), currentState.getY(), nextState.getX(), nextState.getY());
+  }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    long dx = Math.abs(nextX - x);
+    long dy = Math.abs(nextY - y);
+    long diagonal = Math.min(dx, dy);
+    return MoveCostFunction.DIAGONALCOST * diagonal
+        + MoveCostFunction.NONDIAGONALCOST * (Math.max(dx, dy) - diagonal);
+  }
+}
@@ -0,0 +1,30 @@
+package costfunction;
+
+import environment.Environment;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Lower bound on the steepness cost between two cells. Any path between them climbs and
+ * descends at least the height difference of its end points, so the bound is
+ * |steepness(nextState) - steepness(currentState)|. Used as a heuristic, it is consistent and
+ * can be added to a distance heuristic, as SteepnessCostFunction and MoveCostFunction charge
+ * for different things.
+ */
+public class SteepnessBoundCostFunction implements CostFunction {
+  private Environment env;
+
+  public SteepnessBoundCostFunction(Environment env) {
+    this.env = env;
+  }
+
+  @Override
+  public long cost(State currentState, State nextState) {
+    return Math.abs(env.getSteepness(nextState) - env.getSteepness(currentState));
+  }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    return Math.abs(env.getSteepness(nextX, nextY) - env.getSteepness(x, y));
+  }
+}
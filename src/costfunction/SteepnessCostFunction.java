@@ -18,4 +18,9 @@ public class SteepnessCostFunction implements CostFunction {
   public long cost(State currentState, State nextState) {
     return Math.abs(env.getSteepness(nextState) - env.getSteepness(currentState));
   }
+
+  @Override
+  public long cost(int x, int y, int nextX, int nextY) {
+    return Math.abs(env.getSteepness(nextX, nextY) - env.getSteepness(x, y));
+  }
 }
@@ -1,5 +1,9 @@
 package environment;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import operators.Directions;
 import state.State;
 
 /**
@@ -12,6 +16,11 @@ public class Environment {
   private int[][] map;
   //maxClimbHeight defines the max altitude an agent can climb in this environment.
   private int maxClimbHeight;
+  //Optional precomputed move mask of every cell, see buildMoveMasks.
+  private byte[] moveMasks;
+  //Notified of every change made by setCell.
+  private final CopyOnWriteArrayList<TerrainListener> terrainListeners =
+      new CopyOnWriteArrayList<TerrainListener>();
 
   public Environment(int[][] map, int NROWS, int NCOLUMNS, int maxClimbHeight) {
     this.map = map;
@@ -72,13 +81,60 @@ public class Environment {
         nextTerrainState.getY());
   }
 
+  /**
+   * Precomputes the move mask of every cell, so that getMoveMask becomes an array read.
+   * Rows are computed in parallel. Only worth it when the same environment is searched
+   * repeatedly.
+   */
+  public void buildMoveMasks() {
+    final byte[] masks = new byte[NROWS * NCOLUMNS];
+    IntStream.range(0, NROWS).parallel().forEach(x -> {
+      for (int y = 0; y < NCOLUMNS; y++) {
+        masks[x * NCOLUMNS + y] = (byte) computeMoveMask(x, y);
+      }
+    });
+    moveMasks = masks;
+  }
+
+  /**
+   * @return true if move masks have been precomputed
+   */
+  public boolean hasMoveMasks() {
+    return moveMasks != null;
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @return bitmask of the directions in Directions the agent can move in from (x,y). Bit d is
+   * set if the neighbor in direction d is in the terrain and canMove to it is true.
+   */
+  public int getMoveMask(int x, int y) {
+    if (moveMasks != null) {
+      return moveMasks[x * NCOLUMNS + y] & 0xFF;
+    }
+    return computeMoveMask(x, y);
+  }
+
+  private int computeMoveMask(int x, int y) {
+    int mask = 0;
+    for (int d = 0; d < Directions.COUNT; d++) {
+      int nextX = x + Directions.DX[d];
+      int nextY = y + Directions.DY[d];
+      if (isValid(nextX, nextY) && canMove(x, y, nextX, nextY)) {
+        mask |= 1 << d;
+      }
+    }
+    return mask;
+  }
+
   /**
    * @param x
    * @param y
    * @return true if (x,y) in the environment is muddy
    */
   public boolean isMuddy(int x, int y) {
-    return map[x][y] >= 0;
+    return at(x, y) >= 0;
   }
 
   /**
@@ -87,7 +143,7 @@ public class Environment {
    * @return true if (x,y) in the environment is rocky.
    */
   public boolean isRocky(int x, int y) {
-    return map[x][y] < 0;
+    return at(x, y) < 0;
   }
 
   /**
@@ -96,8 +152,9 @@ public class Environment {
    * @return the altitude of (x,y) in the environment.
    */
   public int getSteepness(int x, int y) {
-    if (isRocky(x, y)) {
-      return Math.abs(map[x][y]);
+    int value = at(x, y);
+    if (value < 0) {
+      return Math.abs(value);
     }
     return 0;
   }
@@ -108,8 +165,9 @@ public class Environment {
    * @return the muddiness of (x,y) in the environment.
    */
   public int getMuddiness(int x, int y) {
-    if (isMuddy(x, y)) {
-      return map[x][y];
+    int value = at(x, y);
+    if (value >= 0) {
+      return value;
     }
     return 0;
   }
@@ -119,7 +177,7 @@ public class Environment {
    * @return true is state is muddy, false otherwise.
    */
   public boolean isMuddy(State state) {
-    return map[state.getX()][state.getY()] >= 0;
+    return at(state.getX(), state.getY()) >= 0;
   }
 
   /**
@@ -127,11 +185,79 @@ public class Environment {
    * @return true if state is rocky
    */
   public boolean isRocky(State state) {
-    return map[state.getX()][state.getY()] < 0;
+    return at(state.getX(), state.getY()) < 0;
   }
 
   public int at(State state) {
-    return map[state.getX()][state.getY()];
+    return at(state.getX(), state.getY());
+  }
+
+  /**
+   * All reads of the terrain go through this method, so subclasses may store the terrain
+   * differently.
+   * @param x
+   * @param y
+   * @return the terrain value of (x,y). Negative for rocks, mud level otherwise.
+   */
+  public int at(int x, int y) {
+    return map[x][y];
+  }
+
+  /**
+   * Changes the terrain value of (x,y), updates the move masks of the cell and its neighbors
+   * if they have been built, then notifies the terrain listeners. Structures built from the
+   * terrain, such as landmark tables, reachability labels, cached paths and hierarchical
+   * graphs, listen to it and drop or rebuild what the change made stale. Must not be called
+   * while a search over this environment is running.
+   * @param x
+   * @param y
+   * @param value : Negative for rocks, mud level otherwise
+   */
+  public void setCell(int x, int y, int value) {
+    int oldValue = at(x, y);
+    if (oldValue == value) {
+      return;
+    }
+    store(x, y, value);
+    if (moveMasks != null) {
+      for (int i = Math.max(0, x - 1); i <= Math.min(NROWS - 1, x + 1); i++) {
+        for (int j = Math.max(0, y - 1); j <= Math.min(NCOLUMNS - 1, y + 1); j++) {
+          moveMasks[i * NCOLUMNS + j] = (byte) computeMoveMask(i, j);
+        }
+      }
+    }
+    for (TerrainListener terrainListener : terrainListeners) {
+      terrainListener.cellChanged(x, y, oldValue, value);
+    }
+  }
+
+  /**
+   * All writes of the terrain go through this method, so subclasses that store the terrain
+   * differently override it along with at.
+   * @param x
+   * @param y
+   * @param value
+   */
+  protected void store(int x, int y, int value) {
+    map[x][y] = value;
+  }
+
+  /**
+   * @param terrainListener : Notified of every later change to the terrain
+   */
+  public void addTerrainListener(TerrainListener terrainListener) {
+    terrainListeners.add(terrainListener);
+  }
+
+  /**
+   * @param terrainListener : No longer notified of changes to the terrain
+   */
+  public void removeTerrainListener(TerrainListener terrainListener) {
+    terrainListeners.remove(terrainListener);
+  }
+
+  public int getMaxClimbHeight() {
+    return maxClimbHeight;
   }
 
   /**
@@ -155,7 +281,7 @@ public class Environment {
     String printString = "TERRAIN: \n NROWS " + NROWS + " NCOLUMNS " + NCOLUMNS + "\n";
     for (int i = 0; i < NROWS; i++) {
       for (int j = 0; j < NCOLUMNS; j++) {
-        printString += map[i][j] + " ";
+        printString += at(i, j) + " ";
       }
       printString += "\n";
     }
@@ -0,0 +1,78 @@
+package environment;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * An environment that stores the terrain in a single row-major array, indexed by
+ * x * NCOLUMNS + y, instead of an int[][] map. Steepness and muddiness are precomputed into
+ * arrays of their own at construction, so canMove and the cost functions are plain array reads.
+ */
+public class FlatEnvironment extends Environment {
+  private final int[] cells;
+  private final int[] steepness;
+  private final int[] muddiness;
+
+  /**
+   * @param map
+   * @param NROWS
+   * @param NCOLUMNS
+   * @param maxClimbHeight
+   */
+  public FlatEnvironment(int[][] map, int NROWS, int NCOLUMNS, int maxClimbHeight) {
+    this(new Environment(map, NROWS, NCOLUMNS, maxClimbHeight));
+  }
+
+  /**
+   * Copies the terrain of another environment, for example a memory mapped one, onto the heap.
+   * @param source
+   */
+  public FlatEnvironment(Environment source) {
+    super(null, source.getNRows(), source.getNColumns(), source.getMaxClimbHeight());
+    int nRows = source.getNRows();
+    int nColumns = source.getNColumns();
+    cells = new int[nRows * nColumns];
+    steepness = new int[cells.length];
+    muddiness = new int[cells.length];
+    for (int x = 0; x < nRows; x++) {
+      for (int y = 0; y < nColumns; y++) {
+        int value = source.at(x, y);
+        int index = x * nColumns + y;
+        cells[index] = value;
+        if (value < 0) {
+          steepness[index] = Math.abs(value);
+        } else {
+          muddiness[index] = value;
+        }
+      }
+    }
+  }
+
+  @Override
+  public int at(int x, int y) {
+    return cells[x * getNColumns() + y];
+  }
+
+  @Override
+  protected void store(int x, int y, int value) {
+    int index = x * getNColumns() + y;
+    cells[index] = value;
+    steepness[index] = value < 0 ? Math.abs(value) : 0;
+    muddiness[index] = value < 0 ? 0 : value;
+  }
+
+  @Override
+  public int getSteepness(int x, int y) {
+    return steepness[x * getNColumns() + y];
+  }
+
+  @Override
+  public int getMuddiness(int x, int y) {
+    return muddiness[x * getNColumns() + y];
+  }
+
+  @Override
+  public boolean canMove(int x, int y, int nextX, int nextY) {
+    int nColumns = getNColumns();
+    return Math.abs(steepness[x * nColumns + y] - steepness[nextX * nColumns + nextY])
+        <= getMaxClimbHeight();
+  }
+}
@@ -0,0 +1,66 @@
+package environment;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * An environment whose terrain is read directly from byte buffers, typically memory mapped
+ * regions of a binary terrain file, instead of an int[][] map. Cells are stored row-major as
+ * 2 or 4 byte signed integers. The terrain is split into segments of whole rows so that
+ * terrains larger than a single buffer can be addressed.
+ */
+public class MappedEnvironment extends Environment {
+  //Segment i holds rows [i * rowsPerSegment, (i + 1) * rowsPerSegment)
+  private final ByteBuffer[] segments;
+  private final int rowsPerSegment;
+  //Width of a cell in bytes, 2 or 4.
+  private final int cellBytes;
+
+  /**
+   * @param segments : Buffers holding the cells. Index 0 of a segment is its first cell.
+   * @param rowsPerSegment : Number of rows in every segment but the last
+   * @param cellBytes : Width of a cell in bytes, 2 or 4
+   * @param NROWS
+   * @param NCOLUMNS
+   * @param maxClimbHeight
+   */
+  public MappedEnvironment(ByteBuffer[] segments, int rowsPerSegment, int cellBytes, int NROWS,
+      int NCOLUMNS, int maxClimbHeight) {
+    super(null, NROWS, NCOLUMNS, maxClimbHeight);
+    if (cellBytes != 2 && cellBytes != 4) {
+      throw new IllegalArgumentException("Unsupported cell width " + cellBytes);
+    }
+    this.segments = segments;
+    this.rowsPerSegment = rowsPerSegment;
+    this.cellBytes = cellBytes;
+  }
+
+  @Override
+  public int at(int x, int y) {
+    ByteBuffer segment = segments[x / rowsPerSegment];
+    int offset = ((x % rowsPerSegment) * getNColumns() + y) * cellBytes;
+    if (cellBytes == 2) {
+      return segment.getShort(offset);
+    }
+    return segment.getInt(offset);
+  }
+
+  /**
+   * Writes through to the buffers, so a memory mapped file must have been mapped read-write.
+   * @throws java.nio.ReadOnlyBufferException if the buffers are read only
+   * @throws IllegalArgumentException if cells are 2 bytes wide and value does not fit in them
+   */
+  @Override
+  protected void store(int x, int y, int value) {
+    ByteBuffer segment = segments[x / rowsPerSegment];
+    int offset = ((x % rowsPerSegment) * getNColumns() + y) * cellBytes;
+    if (cellBytes == 2) {
+      if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+        throw new IllegalArgumentException("Cell value " + value + " does not fit in 2 bytes");
+      }
+      segment.putShort(offset, (short) value);
+    } else {
+      segment.putInt(offset, value);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package environment;
+
+import java.util.Arrays;
+
+import operators.Directions;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Labels every cell with the connected component it belongs to under the 8 moves of
+ * Directions. canMove only compares the heights of the two cells, so it is symmetric and the
+ * components are those of an undirected graph: a goal state can be reached from a start state
+ * if and only if both carry the same label. Built once, in O(NROWS * NCOLUMNS) time, with 4
+ * bytes per cell for the labels. The index listens to the terrain, and labels it again on the
+ * first lookup after a change.
+ */
+public class ReachabilityIndex implements TerrainListener {
+  private final Environment env;
+  private final int nColumns;
+  private final int[] labels;
+  private int componentCount;
+  //Set when the terrain changes, so that the next lookup labels it again.
+  private volatile boolean stale;
+
+  private ReachabilityIndex(Environment env) {
+    this.env = env;
+    this.nColumns = env.getNColumns();
+    this.labels = new int[env.getNRows() * nColumns];
+    label();
+  }
+
+  /**
+   * Labels env by flood fill, and keeps the labels up to date with its terrain. Uses the move
+   * masks of env when they have been built.
+   * @param env
+   * @return the index
+   */
+  public static ReachabilityIndex build(Environment env) {
+    ReachabilityIndex index = new ReachabilityIndex(env);
+    env.addTerrainListener(index);
+    return index;
+  }
+
+  /**
+   * Labels the cells of env by flood fill.
+   */
+  private void label() {
+    Arrays.fill(labels, -1);
+    //Every cell is queued once, so the queue never wraps.
+    int[] queue = new int[labels.length];
+    int componentCount = 0;
+    for (int cell = 0; cell < labels.length; cell++) {
+      if (labels[cell] != -1) {
+        continue;
+      }
+      int label = componentCount++;
+      int head = 0;
+      int tail = 0;
+      labels[cell] = label;
+      queue[tail++] = cell;
+      while (head < tail) {
+        int node = queue[head++];
+        int x = node / nColumns;
+        int y = node - x * nColumns;
+        int mask = env.getMoveMask(x, y);
+        for (int d = 0; d < Directions.COUNT; d++) {
+          if ((mask & (1 << d)) == 0) {
+            continue;
+          }
+          int next = (x + Directions.DX[d]) * nColumns + y + Directions.DY[d];
+          if (labels[next] == -1) {
+            labels[next] = label;
+            queue[tail++] = next;
+          }
+        }
+      }
+    }
+    this.componentCount = componentCount;
+  }
+
+  /**
+   * Marks the labels stale. A change can split a component, so they are not patched.
+   */
+  public void cellChanged(int x, int y, int oldValue, int newValue) {
+    stale = true;
+  }
+
+  /**
+   * Labels the terrain again if it changed since it was last labelled.
+   */
+  private void refresh() {
+    if (stale) {
+      synchronized (this) {
+        if (stale) {
+          label();
+          stale = false;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return true if there is a path from startState to goalState
+   */
+  public boolean isReachable(State startState, State goalState) {
+    return getComponent(startState.getX(), startState.getY())
+        == getComponent(goalState.getX(), goalState.getY());
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @return the label of the component (x,y) belongs to, from 0 to getComponentCount() - 1
+   */
+  public int getComponent(int x, int y) {
+    refresh();
+    return labels[x * nColumns + y];
+  }
+
+  public int getComponentCount() {
+    refresh();
+    return componentCount;
+  }
+}
@@ -0,0 +1,21 @@
+package environment;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * TerrainListener is notified of every change to the terrain of an environment. When the value
+ * of a cell changes, the edges affected are the moves between the cell and each of its 8
+ * neighbors, in both directions: whether the move is allowed, its steepness cost and, for
+ * moves into the cell, its muddiness cost. No other edge changes.
+ */
+public interface TerrainListener {
+
+  /**
+   * Called by Environment.setCell after the cell and the move masks have been updated, on the
+   * thread that changed the cell.
+   * @param x
+   * @param y
+   * @param oldValue : Terrain value of (x,y) before the change
+   * @param newValue : Terrain value of (x,y) now
+   */
+  void cellChanged(int x, int y, int oldValue, int newValue);
+}
@@ -0,0 +1,120 @@
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import environment.MappedEnvironment;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Reads and writes the binary terrain format. All values are big-endian.
+ * int magic 'TERR'
+ * int version
+ * int #rows
+ * int #cols
+ * int max rock height that wagon can climb
+ * int cell width in bytes, 2 (short) or 4 (int)
+ * rows * cols cells, row-major
+ */
+public class BinaryTerrain {
+  public static final int MAGIC = 0x54455252;
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 24;
+  //Largest segment that is memory mapped at once.
+  static final long MAX_SEGMENT_BYTES = 1 << 30;
+
+  /**
+   * Writes terrain in the binary format. Cells are written as shorts if every value fits.
+   * @param path
+   * @param terrain
+   * @param rows
+   * @param cols
+   * @param maxClimbHeight
+   * @throws IOException
+   */
+  public static void write(String path, int[][] terrain, int rows, int cols, int maxClimbHeight)
+      throws IOException {
+    int cellBytes = 2;
+    for (int i = 0; i < rows && cellBytes == 2; i++) {
+      for (int j = 0; j < cols; j++) {
+        if (terrain[i][j] < Short.MIN_VALUE || terrain[i][j] > Short.MAX_VALUE) {
+          cellBytes = 4;
+          break;
+        }
+      }
+    }
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(path), 1 << 20))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(rows);
+      out.writeInt(cols);
+      out.writeInt(maxClimbHeight);
+      out.writeInt(cellBytes);
+      for (int i = 0; i < rows; i++) {
+        for (int j = 0; j < cols; j++) {
+          if (cellBytes == 2) {
+            out.writeShort(terrain[i][j]);
+          } else {
+            out.writeInt(terrain[i][j]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Memory maps a binary terrain file read-only. The mapping stays valid after this method
+   * returns, and is shared with other processes mapping the same file through the page cache.
+   * @param path
+   * @return an environment that reads cells from the mapped file
+   * @throws IOException if the file is not a binary terrain file
+   */
+  public static MappedEnvironment map(String path) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      int n = 0;
+      while (header.hasRemaining() && n >= 0) {
+        n = channel.read(header);
+      }
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException(path + " is not a binary terrain file");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported binary terrain version " + version);
+      }
+      int rows = header.getInt();
+      int cols = header.getInt();
+      int maxClimbHeight = header.getInt();
+      int cellBytes = header.getInt();
+      if (rows <= 0 || cols <= 0 || (cellBytes != 2 && cellBytes != 4)) {
+        throw new IOException("Malformed binary terrain header in " + path);
+      }
+      long rowBytes = (long) cols * cellBytes;
+      if (channel.size() < HEADER_BYTES + rowBytes * rows) {
+        throw new IOException("Truncated binary terrain file " + path);
+      }
+
+      int rowsPerSegment = (int) Math.max(1, Math.min(rows, MAX_SEGMENT_BYTES / rowBytes));
+      ByteBuffer[] segments = new ByteBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+      for (int i = 0; i < segments.length; i++) {
+        int segmentRows = Math.min(rowsPerSegment, rows - i * rowsPerSegment);
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY,
+            HEADER_BYTES + i * rowsPerSegment * rowBytes, segmentRows * rowBytes);
+        segments[i] = segment;
+      }
+      return new MappedEnvironment(segments, rowsPerSegment, cellBytes, rows, cols,
+          maxClimbHeight);
+    }
+  }
+}
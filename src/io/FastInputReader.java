@@ -0,0 +1,164 @@
+package io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Reads the input file through a large direct ByteBuffer and parses signed integers straight
+ * from bytes, without creating a String per token. Files of any size are read in chunks.
+ */
+public class FastInputReader implements Closeable {
+  //Size of the direct buffer the file is read through.
+  static final int BUFFER_SIZE = 1 << 22;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final long startNanos;
+  private long bytesRead;
+
+  /**
+   * @param path : Path of the file to read
+   * @throws IOException
+   */
+  public FastInputReader(String path) throws IOException {
+    channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    buffer.flip();
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * @return the next line without its line terminator, or null at end of file
+   * @throws IOException
+   */
+  public String readLine() throws IOException {
+    int b = read();
+    if (b < 0) {
+      return null;
+    }
+    StringBuilder line = new StringBuilder();
+    while (b >= 0 && b != '\n') {
+      if (b != '\r') {
+        line.append((char) b);
+      }
+      b = read();
+    }
+    return line.toString();
+  }
+
+  /**
+   * Skips whitespace and parses the next signed integer.
+   * @return the next integer in the file
+   * @throws IOException if the file ends before an integer is found
+   * @throws NumberFormatException if the next token is not an integer
+   */
+  public int nextInt() throws IOException {
+    int b = read();
+    while (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+      b = read();
+    }
+    if (b < 0) {
+      throw new EOFException("Expected an integer at byte " + position());
+    }
+    boolean negative = false;
+    if (b == '-' || b == '+') {
+      negative = b == '-';
+      b = read();
+    }
+    if (b < '0' || b > '9') {
+      throw new NumberFormatException("Expected a digit at byte " + position());
+    }
+    long value = 0;
+    while (b >= '0' && b <= '9') {
+      value = value * 10 + (b - '0');
+      if (value > Integer.MAX_VALUE + 1L) {
+        throw new NumberFormatException("Integer out of range at byte " + position());
+      }
+      b = read();
+    }
+    if (b >= 0 && b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+      throw new NumberFormatException("Unexpected character '" + (char) b + "' at byte "
+          + position());
+    }
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw new NumberFormatException("Integer out of range at byte " + position());
+    }
+    return (int) value;
+  }
+
+  /**
+   * Fills terrain row by row with the next rows * cols integers.
+   * @param terrain
+   * @param rows
+   * @param cols
+   * @throws IOException
+   */
+  public void readTerrain(int[][] terrain, int rows, int cols) throws IOException {
+    for (int i = 0; i < rows; i++) {
+      int[] row = terrain[i];
+      for (int j = 0; j < cols; j++) {
+        row[j] = nextInt();
+      }
+    }
+  }
+
+  /**
+   * @return number of bytes read from the file so far
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * @return nanoseconds elapsed since the reader was opened
+   */
+  public long getElapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+
+  /**
+   * @return parse throughput so far in megabytes per second
+   */
+  public double getThroughput() {
+    return (bytesRead / 1e6) / (getElapsedNanos() / 1e9);
+  }
+
+  /**
+   * @return offset in the file of the next unread byte
+   */
+  private long position() {
+    return bytesRead - buffer.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * @return the next byte, or -1 at end of file
+   * @throws IOException
+   */
+  private int read() throws IOException {
+    if (!buffer.hasRemaining()) {
+      buffer.clear();
+      int n;
+      do {
+        n = channel.read(buffer);
+      } while (n == 0);
+      buffer.flip();
+      if (n < 0) {
+        return -1;
+      }
+      bytesRead += n;
+    }
+    return buffer.get() & 0xFF;
+  }
+}
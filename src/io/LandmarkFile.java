@@ -0,0 +1,173 @@
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import costfunction.LandmarkCostFunction;
+import environment.Environment;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Reads and writes the landmark tables of a LandmarkCostFunction, so that the Dijkstra sweeps
+ * are only run once per terrain. All values are big-endian.
+ * int magic 'LMRK'
+ * int version
+ * int #rows
+ * int #cols
+ * int max rock height that wagon can climb
+ * int #landmarks
+ * long CRC32 of the terrain values, row by row
+ * short #bytes of the cost model
+ * cost model in UTF-8, see SearchFactory.costModel
+ * #landmarks landmark cells, x * #cols + y
+ * for each landmark, rows * cols costs from the landmark and then rows * cols costs to it
+ * Tables built for another terrain, even of the same size, or another cost model would make
+ * the heuristic inadmissible, so read rejects a file whose checksum or cost model differs.
+ */
+public class LandmarkFile {
+  public static final int MAGIC = 0x4C4D524B;
+  public static final int VERSION = 2;
+  //Fixed part of the header, up to the cost model bytes.
+  public static final int HEADER_BYTES = 34;
+
+  /**
+   * @param path
+   * @param landmarks
+   * @param env : Environment the tables were built on
+   * @param costModel : Cost model the tables were built for
+   * @throws IOException
+   */
+  public static void write(String path, LandmarkCostFunction landmarks, Environment env,
+      String costModel) throws IOException {
+    int[] cells = landmarks.getLandmarks();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(path), 1 << 20))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(landmarks.getNRows());
+      out.writeInt(landmarks.getNColumns());
+      out.writeInt(env.getMaxClimbHeight());
+      out.writeInt(cells.length);
+      out.writeLong(checksum(env));
+      byte[] model = costModel.getBytes(StandardCharsets.UTF_8);
+      out.writeShort(model.length);
+      out.write(model);
+      for (int cell : cells) {
+        out.writeInt(cell);
+      }
+      for (int i = 0; i < cells.length; i++) {
+        for (int cost : landmarks.getFromLandmark(i)) {
+          out.writeInt(cost);
+        }
+        for (int cost : landmarks.getToLandmark(i)) {
+          out.writeInt(cost);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param path
+   * @param env : Environment the tables will be used on
+   * @param costModel : Cost model the tables will be used with
+   * @return the landmark heuristic stored in path, listening to the terrain of env
+   * @throws IOException if the file is not a landmark file, or was built for an environment of
+   * different dimensions, max rock height or terrain, or for another cost model
+   */
+  public static LandmarkCostFunction read(String path, Environment env, String costModel)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      readFully(channel, header);
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException(path + " is not a landmark file");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported landmark file version " + version);
+      }
+      int rows = header.getInt();
+      int cols = header.getInt();
+      int maxClimbHeight = header.getInt();
+      int count = header.getInt();
+      long terrainChecksum = header.getLong();
+      if (rows != env.getNRows() || cols != env.getNColumns()
+          || maxClimbHeight != env.getMaxClimbHeight() || terrainChecksum != checksum(env)) {
+        throw new IOException("Landmark file " + path + " was built for another terrain");
+      }
+      ByteBuffer model = ByteBuffer.allocate(header.getShort() & 0xFFFF);
+      readFully(channel, model);
+      if (model.remaining() < model.capacity()) {
+        throw new IOException("Truncated landmark file " + path);
+      }
+      String fileCostModel = new String(model.array(), StandardCharsets.UTF_8);
+      if (fileCostModel.equals(costModel) == false) {
+        throw new IOException("Landmark file " + path + " was built for cost model "
+            + fileCostModel + ", not " + costModel);
+      }
+      long tablesBegin = channel.position();
+      int cells = rows * cols;
+      if (count < 0 || channel.size() < tablesBegin + 4L * count + 8L * count * cells) {
+        throw new IOException("Truncated landmark file " + path);
+      }
+
+      int[] landmarks = new int[count];
+      ByteBuffer buffer = ByteBuffer.allocate(4 * count);
+      readFully(channel, buffer);
+      buffer.asIntBuffer().get(landmarks);
+      int[][] fromLandmark = new int[count][];
+      int[][] toLandmark = new int[count][];
+      long position = tablesBegin + 4L * count;
+      for (int i = 0; i < count; i++) {
+        fromLandmark[i] = new int[cells];
+        toLandmark[i] = new int[cells];
+        channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * cells).asIntBuffer()
+            .get(fromLandmark[i]);
+        position += 4L * cells;
+        channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * cells).asIntBuffer()
+            .get(toLandmark[i]);
+        position += 4L * cells;
+      }
+      LandmarkCostFunction heuristic = new LandmarkCostFunction(rows, cols, landmarks,
+          fromLandmark, toLandmark);
+      env.addTerrainListener(heuristic);
+      return heuristic;
+    }
+  }
+
+  /**
+   * @param env
+   * @return the CRC32 of the terrain values of env, row by row, each as 4 big-endian bytes
+   */
+  public static long checksum(Environment env) {
+    CRC32 crc = new CRC32();
+    ByteBuffer row = ByteBuffer.allocate(4 * env.getNColumns());
+    for (int x = 0; x < env.getNRows(); x++) {
+      row.clear();
+      for (int y = 0; y < env.getNColumns(); y++) {
+        row.putInt(env.at(x, y));
+      }
+      crc.update(row.array(), 0, row.position());
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Fills buffer from the channel and flips it.
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    int n = 0;
+    while (buffer.hasRemaining() && n >= 0) {
+      n = channel.read(buffer);
+    }
+    buffer.flip();
+  }
+}
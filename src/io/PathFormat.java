@@ -0,0 +1,34 @@
+package io;
+
+import java.util.ArrayList;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Formats a path the way output.txt holds it: y,x of every state from start to goal, separated
+ * by spaces, or FAIL when there is no path.
+ */
+public class PathFormat {
+  public static final String FAIL = "FAIL";
+
+  /**
+   * Appends path to sb, without a line terminator.
+   * @param sb
+   * @param path : Sequence of states from start to goal. Empty if no path was found.
+   * @return sb
+   */
+  public static StringBuilder append(StringBuilder sb, ArrayList<State> path) {
+    if (path.isEmpty()) {
+      return sb.append(FAIL);
+    }
+    for (int i = 0; i < path.size(); i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      State c = path.get(i);
+      sb.append(c.getY()).append(',').append(c.getX());
+    }
+    return sb;
+  }
+}
@@ -0,0 +1,186 @@
+package io;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import operators.Directions;
+import search.CompactPath;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Writes paths in the format of PathFormat, one per line, as they are found. Coordinates are
+ * formatted straight into a reusable byte buffer, which is written out whenever it fills up, so
+ * memory does not grow with the number or length of the paths. Lines are separated by '\n',
+ * and there is none after the last path, as in output.txt.
+ */
+public class PathWriter implements Closeable {
+  static final int BUFFER_SIZE = 1 << 16;
+  private static final byte[] FAIL = PathFormat.FAIL.getBytes();
+  //Room for a coordinate pair: two ints, a comma and a space.
+  private static final int MAX_STATE_BYTES = 2 * 11 + 2;
+
+  private final OutputStream out;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private long paths;
+
+  /**
+   * @param out : Receives the formatted paths. Closed by close.
+   */
+  public PathWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  /**
+   * @param fileName
+   * @param gzip : Whether to compress the file with gzip
+   * @return a writer that replaces the contents of fileName
+   * @throws IOException
+   */
+  public static PathWriter open(String fileName, boolean gzip) throws IOException {
+    OutputStream out = new FileOutputStream(fileName, false);
+    if (gzip) {
+      out = new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+    return new PathWriter(out);
+  }
+
+  /**
+   * Writes path on a line of its own.
+   * @param path : Sequence of states from start to goal. Empty if no path was found.
+   * @throws IOException
+   */
+  public void write(ArrayList<State> path) throws IOException {
+    if (startLine(path.isEmpty())) {
+      return;
+    }
+    for (int i = 0; i < path.size(); i++) {
+      ensure(MAX_STATE_BYTES);
+      if (i > 0) {
+        buffer[position++] = ' ';
+      }
+      State c = path.get(i);
+      putInt(c.getY());
+      buffer[position++] = ',';
+      putInt(c.getX());
+    }
+  }
+
+  /**
+   * Writes path on a line of its own, decoding one step at a time.
+   * @param path : Path from start to goal. Empty if no path was found.
+   * @throws IOException
+   */
+  public void write(CompactPath path) throws IOException {
+    if (startLine(path.isEmpty())) {
+      return;
+    }
+    int x = path.getStartX();
+    int y = path.getStartY();
+    for (int i = 0; i < path.size(); i++) {
+      ensure(MAX_STATE_BYTES);
+      if (i > 0) {
+        int direction = path.getDirection(i - 1);
+        x += Directions.DX[direction];
+        y += Directions.DY[direction];
+        buffer[position++] = ' ';
+      }
+      putInt(y);
+      buffer[position++] = ',';
+      putInt(x);
+    }
+  }
+
+  /**
+   * @return the number of paths written
+   */
+  public long getPaths() {
+    return paths;
+  }
+
+  /**
+   * Writes out the buffer and flushes the stream.
+   * @throws IOException
+   */
+  public void flush() throws IOException {
+    drain();
+    out.flush();
+  }
+
+  /**
+   * Writes out the buffer and closes the stream, which finishes a gzip file.
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      drain();
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Separates the path from the one before, and writes FAIL if it is empty.
+   * @param fail : Whether no path was found
+   * @return whether the line is done
+   * @throws IOException
+   */
+  private boolean startLine(boolean fail) throws IOException {
+    if (paths++ > 0) {
+      ensure(1);
+      buffer[position++] = '\n';
+    }
+    if (fail) {
+      ensure(FAIL.length);
+      System.arraycopy(FAIL, 0, buffer, position, FAIL.length);
+      position += FAIL.length;
+    }
+    return fail;
+  }
+
+  /**
+   * Writes out the buffer unless it has room for length more bytes.
+   * @param length
+   * @throws IOException
+   */
+  private void ensure(int length) throws IOException {
+    if (position + length > buffer.length) {
+      drain();
+    }
+  }
+
+  private void drain() throws IOException {
+    if (position > 0) {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+
+  /**
+   * Formats value in decimal at the current position.
+   * @param value
+   */
+  private void putInt(int value) {
+    long v = value;
+    if (v < 0) {
+      buffer[position++] = '-';
+      v = -v;
+    }
+    int digits = 1;
+    for (long power = 10; power <= v; power *= 10) {
+      digits++;
+    }
+    int end = position + digits;
+    for (int i = end - 1; i >= position; i--) {
+      buffer[i] = (byte) ('0' + v % 10);
+      v /= 10;
+    }
+    position = end;
+  }
+}
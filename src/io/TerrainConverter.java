@@ -0,0 +1,43 @@
+package io;
+
+import java.io.IOException;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Converts the terrain of an input file in the input.txt layout to the binary terrain format.
+ * The algorithm, start state and goal states are skipped.
+ *
+ * Usage: java io.TerrainConverter input.txt terrain.bin
+ */
+public class TerrainConverter {
+
+  public static void main(String... args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: java io.TerrainConverter <input.txt> <terrain.bin>");
+      System.exit(1);
+    }
+    int rows;
+    int cols;
+    int maxClimbHeight;
+    int[][] terrain;
+    try (FastInputReader reader = new FastInputReader(args[0])) {
+      //Algorithm
+      reader.readLine();
+      cols = reader.nextInt();
+      rows = reader.nextInt();
+      //Start state
+      reader.nextInt();
+      reader.nextInt();
+      maxClimbHeight = reader.nextInt();
+      //Goal states
+      int N = reader.nextInt();
+      for (int i = 0; i < 2 * N; i++) {
+        reader.nextInt();
+      }
+      terrain = new int[rows][cols];
+      reader.readTerrain(terrain, rows, cols);
+    }
+    BinaryTerrain.write(args[1], terrain, rows, cols, maxClimbHeight);
+    System.out.println("Wrote " + rows + "x" + cols + " terrain to " + args[1]);
+  }
+}
@@ -0,0 +1,48 @@
+package operators;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * The 8 unit moves of the agent, in the order North, North-East, East, South-East, South,
+ * South-West, West, North-West. Direction d moves the agent by (DX[d], DY[d]) and is bit
+ * (1 << d) of a move mask.
+ */
+public class Directions {
+  public static final int COUNT = 8;
+  public static final int[] DX = {-1, -1, 0, 1, 1, 1, 0, -1};
+  public static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+  /**
+   * @param dx
+   * @param dy
+   * @return the direction that moves the agent by (dx,dy), or -1 if it is not a unit move
+   */
+  public static int indexOf(int dx, int dy) {
+    for (int d = 0; d < COUNT; d++) {
+      if (DX[d] == dx && DY[d] == dy) {
+        return d;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param operator
+   * @return the direction operator moves the agent in, or -1 if it is not a unit move
+   */
+  public static int indexOf(Operator operator) {
+    State moved = operator.apply(new State(0, 0));
+    return indexOf(moved.getX(), moved.getY());
+  }
+
+  /**
+   * @param operator
+   * @return the move mask bit of the direction operator moves the agent in, or 0 if it is not
+   * a unit move
+   */
+  public static int bitOf(Operator operator) {
+    int direction = indexOf(operator);
+    return direction < 0 ? 0 : 1 << direction;
+  }
+}
@@ -4,10 +4,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.PriorityQueue;
 
 import costfunction.CostFunction;
 import environment.Environment;
+import operators.Directions;
 import operators.Operator;
 import state.State;
 
@@ -77,11 +77,13 @@ class AStarNode {
  * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
  * AStarSearch implements A* search algorithm
  */
-public class AStarSearch implements Search {
+public class AStarSearch implements MultiGoalSearch, CostSearch {
   Environment env;
   ArrayList<Operator> operators;
-  //The running queue
-  PriorityQueue<AStarNode> queue;
+  //Move mask bit of each operator, 0 if an operator is not a unit move.
+  int[] operatorBits;
+  //The running queue, keyed by cell index x * NCOLUMNS + y
+  IndexedMinHeap queue;
   //Map that holds nodes that are already processed.
   HashMap<AStarNode, AStarNode> closed;
   //Map that holds nodes that are yet to be processed.
@@ -92,23 +94,32 @@ public class AStarSearch implements Search {
   ArrayList<CostFunction> costFunctions;
   //The hueristic g(n)
   ArrayList<CostFunction> heuristicCostFunctions;
+  //Set while searching for costs only, when parent links are not kept.
+  boolean costOnly;
 
-  class AStarComparator implements Comparator<AStarNode> {
-
-    public int compare(AStarNode node1, AStarNode node2) {
-      if (node1.getCost() + node1.getHeuristic() <= node2.getCost() + node2.getHeuristic()) {
-        return -1;
-      } else
-        return 1;
-    }
-
-  }
+  SearchListener listener;
+  SearchMetrics metrics;
+  boolean quiet;
 
   public void reset() {
+    long begin = SearchMetrics.clock(metrics);
     open.clear();
     closed.clear();
     queue.clear();
     parent.clear();
+    if (metrics != null) {
+      metrics.clear();
+      metrics.resetNanos = System.nanoTime() - begin;
+    }
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
   }
 
   /**
@@ -121,15 +132,23 @@ public class AStarSearch implements Search {
       ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions) {
     this.env = env;
     this.operators = operators;
+    operatorBits = new int[operators.size()];
+    for (int i = 0; i < operators.size(); i++) {
+      operatorBits[i] = Directions.bitOf(operators.get(i));
+    }
     this.costFunctions = costFunctions;
     this.heuristicCostFunctions = heuristicCostFunctions;
-    queue = new PriorityQueue<AStarNode>(new AStarComparator());
+    queue = new IndexedMinHeap(env.getNRows() * env.getNColumns(), true);
     open = new HashMap<AStarNode, AStarNode>();
     closed = new HashMap<AStarNode, AStarNode>();
     parent = new HashMap<AStarNode, AStarNode>();
     reset();
   }
 
+  public Search newInstance() {
+    return new AStarSearch(env, operators, costFunctions, heuristicCostFunctions);
+  }
+
   /**
    * @param startState
    * @param goalState
@@ -137,96 +156,329 @@ public class AStarSearch implements Search {
    * startState to endState
    */
   public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    AStarNode node = sweep(startState, goalState);
+    long solutionCost = node != null ? node.getCost() : 0;
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = extractSolution(node);
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, node != null ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Searches for all goal states from startState while reusing the open and closed lists
+   * across goals. Goals are visited in increasing heuristic distance from startState. Before
+   * each goal the open list is re-prioritised with the heuristic towards that goal, and the
+   * goal is settled once its cost is no more than the least priority in the open list. Closed
+   * nodes are kept, so later goals only expand what earlier goals did not.
+   * @param startState
+   * @param goalStates
+   * @return one sequence of states per goal state, in the order of goalStates
+   */
+  public ArrayList<ArrayList<State>> search(State startState, ArrayList<State> goalStates) {
+    HashMap<State, ArrayList<State>> solutions = new HashMap<State, ArrayList<State>>();
+    HashMap<State, Long> solutionCosts = sweep(startState, goalStates, solutions);
+    ArrayList<ArrayList<State>> result = new ArrayList<ArrayList<State>>();
+    for (State goalState : goalStates) {
+      long solutionCost = solutionCosts.get(goalState);
+      if (quiet == false) {
+        System.out.println(solutionCost != UNREACHABLE ? solutionCost : 0);
+      }
+      result.add(solutions.get(goalState));
+    }
+    return result;
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return the cost of the cheapest path from startState to goalState, or UNREACHABLE
+   */
+  public long searchCost(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    costOnly = true;
+    AStarNode node;
+    try {
+      node = sweep(startState, goalState);
+    } finally {
+      costOnly = false;
+    }
+    if (metrics != null) {
+      metrics.finish(begin, 0, 1, node != null ? 1 : 0, listener);
+    }
+    return node != null ? node.getCost() : UNREACHABLE;
+  }
+
+  /**
+   * Searches for the costs of all goal states as search does for their paths.
+   * @param startState
+   * @param goalStates
+   * @return the cost of the cheapest path from startState to each goal state, or UNREACHABLE
+   */
+  public long[] searchCosts(State startState, ArrayList<State> goalStates) {
+    costOnly = true;
+    HashMap<State, Long> solutionCosts;
+    try {
+      solutionCosts = sweep(startState, goalStates, null);
+    } finally {
+      costOnly = false;
+    }
+    long[] costs = new long[goalStates.size()];
+    for (int i = 0; i < costs.length; i++) {
+      costs[i] = solutionCosts.get(goalStates.get(i));
+    }
+    return costs;
+  }
+
+  /**
+   * Searches from startState until goalState leaves the open list.
+   * @param startState
+   * @param goalState
+   * @return the goal node, or null if goalState cannot be reached
+   */
+  private AStarNode sweep(State startState, State goalState) {
     AStarNode node = new AStarNode(startState, 0);
-    queue.offer(node);
-    parent.put(node, null);
+    queue.insert(index(startState), 0);
+    link(node, null);
     open.put(node, node);
 
-    boolean solutionFound = false;
-    AStarNode child = null;
     while (queue.isEmpty() == false) {
-      node = queue.poll();
-      //Note that startState will be updated every iteration.
-      startState = node.getState();
+      //open always holds the latest node of a state.
+      node = open.get(new AStarNode(stateOf(queue.poll()), 0));
       //If goal found, break
-      if (startState.equals(goalState)) {
-        solutionFound = true;
-        break;
+      if (node.getState().equals(goalState)) {
+        return node;
       } else {
-        //Explore next/adjacent/successor states 
-        State nextState;
-        for (Operator operator : operators) {
-          nextState = operator.apply(startState);
-          //Evaluate a state only if it is feasible
-          if (env.isValid(nextState) && env.canMove(startState, nextState)) {
-            long cost = node.getCost();
-            long heuristicCost = 0;
-            
-            //Calculate costs incurred to reach this state.
-            for (CostFunction cf : costFunctions) {
-              cost += cf.cost(startState, nextState);
-            }
-            //Calculate costs that will incur according to heuristics.
-            for (CostFunction hcf : heuristicCostFunctions) {
-              heuristicCost += hcf.cost(nextState, goalState);
-            }
-            
-            //Generate child node.
-            child = new AStarNode(nextState, cost, heuristicCost);
-
-            
-            if (open.containsKey(child) == false && closed.containsKey(child) == false) {
-              //child unexplored till now
-              
-              queue.offer(child);
-              parent.put(child, node);
-              open.put(child, child);
-            } else if (open.containsKey(child)) {
-              //child is ready for processing.
-              Long prevCost = open.get(child).getCost();
-              if (prevCost > child.getCost()) {
-                //found a better path to child. Hence,update.
-                open.put(child, child);
-                queue.remove(child);
-                queue.offer(child);
-                parent.put(child, node);
-              }
-
-            } else if (closed.containsKey(child)) {
-              //child already explored and processed.
-              Long prevCost = closed.get(child).getCost();
-              if (prevCost > child.getCost()) {
-                //found a better path to child. Hence,update.
-                closed.remove(child);
-                open.put(child, child);
-                queue.remove(child);
-                queue.offer(child);
-                parent.put(child, node);
-              }
-            }
-          }
-        }
+        expand(node, goalState);
       }
       //Done exploring this node. Hence, put it in the closed list.
       closed.put(node, node);
     }
+    return null;
+  }
 
-    //Extract solution
-    ArrayList<State> solution = new ArrayList<State>();
-    long solutionCost = 0;
-    if (solutionFound == true) {
-      solutionCost = node.getCost();
-      while (node != null) {
-        solution.add(node.getState());
-        node = parent.get(node);
+  /**
+   * Searches for every goal state in turn, as described in search, and reports the metrics.
+   * @param startState
+   * @param goalStates
+   * @param solutions : Receives the path to each goal state, or null for costs only
+   * @return the cost of each goal state, or UNREACHABLE
+   */
+  private HashMap<State, Long> sweep(final State startState, ArrayList<State> goalStates,
+      HashMap<State, ArrayList<State>> solutions) {
+    ArrayList<State> orderedGoals = new ArrayList<State>(goalStates);
+    Collections.sort(orderedGoals, new Comparator<State>() {
+      public int compare(State goal1, State goal2) {
+        return Long.compare(heuristic(startState, goal1), heuristic(startState, goal2));
       }
+    });
+
+    long begin = SearchMetrics.clock(metrics);
+    long extractNanos = 0;
+    AStarNode node = new AStarNode(startState, 0);
+    queue.insert(index(startState), 0);
+    link(node, null);
+    open.put(node, node);
 
+    HashMap<State, Long> solutionCosts = new HashMap<State, Long>();
+    for (State goalState : orderedGoals) {
+      if (solutionCosts.containsKey(goalState)) {
+        continue;
+      }
+      reprioritise(goalState);
+      AStarNode goalNode = null;
+      while (true) {
+        AStarNode best = open.get(new AStarNode(goalState, 0));
+        if (best != null && (queue.isEmpty() || best.getCost() <= queue.peekPriority())) {
+          //No node left in the open list can lead to a cheaper path to goalState.
+          goalNode = best;
+          break;
+        }
+        if (queue.isEmpty()) {
+          break;
+        }
+        node = open.get(new AStarNode(stateOf(queue.poll()), 0));
+        expand(node, goalState);
+        closed.put(node, node);
+      }
+      if (solutions != null) {
+        //Extract now, as later goals may reopen nodes on this path.
+        long extractBegin = SearchMetrics.clock(metrics);
+        solutions.put(goalState, extractSolution(goalNode));
+        extractNanos += SearchMetrics.clock(metrics) - extractBegin;
+      }
+      solutionCosts.put(goalState, goalNode != null ? goalNode.getCost() : UNREACHABLE);
     }
-    
+
+    if (metrics != null) {
+      int solved = 0;
+      for (State goalState : goalStates) {
+        if (solutionCosts.get(goalState) != UNREACHABLE) {
+          solved++;
+        }
+      }
+      metrics.finish(begin, extractNanos, goalStates.size(), solved, listener);
+    }
+    return solutionCosts;
+  }
+
+  /**
+   * Keeps the parent link of child, unless only costs are searched for.
+   * @param child
+   * @param node
+   */
+  private void link(AStarNode child, AStarNode node) {
+    if (costOnly == false) {
+      parent.put(child, node);
+    }
+  }
+
+  /**
+   * Explores next/adjacent/successor states of node and updates the running queue.
+   * @param node
+   * @param goalState : The goal the heuristic is computed towards
+   */
+  private void expand(AStarNode node, State goalState) {
+    State startState = node.getState();
+    if (metrics != null) {
+      metrics.expanded++;
+    }
+    boolean masked = env.hasMoveMasks();
+    int moveMask = masked ? env.getMoveMask(startState.getX(), startState.getY()) : 0;
+    State nextState;
+    for (int i = 0; i < operators.size(); i++) {
+      //Evaluate a state only if it is feasible
+      if (masked && operatorBits[i] != 0) {
+        //Feasibility is precomputed. Skip infeasible moves without applying the operator.
+        if ((moveMask & operatorBits[i]) == 0) {
+          continue;
+        }
+        nextState = operators.get(i).apply(startState);
+      } else {
+        nextState = operators.get(i).apply(startState);
+        if (!env.isValid(nextState) || !env.canMove(startState, nextState)) {
+          continue;
+        }
+      }
+      if (metrics != null) {
+        metrics.generated++;
+      }
+      long cost = node.getCost();
+
+      //Calculate costs incurred to reach this state.
+      for (CostFunction cf : costFunctions) {
+        cost += cf.cost(startState, nextState);
+      }
+      //Calculate costs that will incur according to heuristics.
+      long heuristicCost = heuristic(nextState, goalState);
+
+      //Generate child node.
+      AStarNode child = new AStarNode(nextState, cost, heuristicCost);
+
+      if (closed.containsKey(child)) {
+        //child already explored and processed. Checked before open, which keeps expanded nodes.
+        Long prevCost = closed.get(child).getCost();
+        if (prevCost > child.getCost()) {
+          //found a better path to child. Hence,update.
+          closed.remove(child);
+          open.put(child, child);
+          queue.insertOrDecrease(index(nextState), child.getCost() + child.getHeuristic());
+          if (metrics != null) {
+            metrics.reopened++;
+            metrics.opened(queue.size());
+          }
+          link(child, node);
+        }
+      } else if (open.containsKey(child)) {
+        //child is ready for processing.
+        Long prevCost = open.get(child).getCost();
+        if (prevCost > child.getCost()) {
+          //found a better path to child. Hence,update.
+          open.put(child, child);
+          if (metrics != null) {
+            metrics.decreasedKeys++;
+          }
+          queue.insertOrDecrease(index(nextState), child.getCost() + child.getHeuristic());
+          link(child, node);
+        }
+      } else {
+        //child unexplored till now
+        queue.insert(index(nextState), child.getCost() + child.getHeuristic());
+        link(child, node);
+        open.put(child, child);
+        if (metrics != null) {
+          metrics.opened(queue.size());
+        }
+      }
+    }
+  }
+
+  /**
+   * Recomputes the heuristic of every node in the running queue towards goalState.
+   * @param goalState
+   */
+  private void reprioritise(State goalState) {
+    int[] keys = new int[queue.size()];
+    for (int slot = 0; slot < keys.length; slot++) {
+      keys[slot] = queue.keyAt(slot);
+    }
+    queue.clear();
+    for (int key : keys) {
+      State state = stateOf(key);
+      AStarNode node = open.get(new AStarNode(state, 0));
+      AStarNode updated = new AStarNode(state, node.getCost(), heuristic(state, goalState));
+      open.put(updated, updated);
+      queue.insert(key, updated.getCost() + updated.getHeuristic());
+    }
+  }
+
+  /**
+   * @param state
+   * @param goalState
+   * @return Costs that will incur according to heuristics from state to goalState
+   */
+  private long heuristic(State state, State goalState) {
+    long heuristicCost = 0;
+    for (CostFunction hcf : heuristicCostFunctions) {
+      heuristicCost += hcf.cost(state, goalState);
+    }
+    return heuristicCost;
+  }
+
+  /**
+   * @param node : The goal node, or null if the goal was not reached
+   * @return A sequence of states that correspond to the path from the start state to node
+   */
+  private ArrayList<State> extractSolution(AStarNode node) {
+    ArrayList<State> solution = new ArrayList<State>();
+    while (node != null) {
+      solution.add(node.getState());
+      node = parent.get(node);
+    }
+
     //solution contains nodes from goal to start. Hence, reverse before returning. 
     Collections.reverse(solution);
-
-    System.out.println(solutionCost);
     return solution;
   }
+
+  /**
+   * @param state
+   * @return index of state in the running queue
+   */
+  private int index(State state) {
+    return state.getX() * env.getNColumns() + state.getY();
+  }
+
+  /**
+   * @param index
+   * @return state at index in the running queue
+   */
+  private State stateOf(int index) {
+    return new State(index / env.getNColumns(), index % env.getNColumns());
+  }
 }
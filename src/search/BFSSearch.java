@@ -60,18 +60,40 @@ class BFSNode {
  * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
  * BFSSearch implements BFS search algorithm
  */
-public class BFSSearch implements Search {
+public class BFSSearch implements MultiGoalSearch, CostSearch {
   Environment env;
   ArrayList<Operator> operators;
+  //Move mask bit of each operator, 0 if an operator is not a unit move.
+  int[] operatorBits;
   LinkedList<BFSNode> queue;
   HashSet<State> visited;
   HashMap<BFSNode, BFSNode> parent;
   ArrayList<CostFunction> costFunctions;
+  //Set while searching for costs only, when parent references are not kept.
+  boolean costOnly;
+
+  SearchListener listener;
+  SearchMetrics metrics;
+  boolean quiet;
 
   public void reset() {
+    long begin = SearchMetrics.clock(metrics);
     visited.clear();
     queue.clear();
     parent.clear();
+    if (metrics != null) {
+      metrics.clear();
+      metrics.resetNanos = System.nanoTime() - begin;
+    }
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
   }
 
   /**
@@ -83,6 +105,10 @@ public class BFSSearch implements Search {
       ArrayList<CostFunction> costFunctions) {
     this.env = env;
     this.operators = operators;
+    operatorBits = new int[operators.size()];
+    for (int i = 0; i < operators.size(); i++) {
+      operatorBits[i] = Directions.bitOf(operators.get(i));
+    }
     this.costFunctions = costFunctions;
     queue = new LinkedList<BFSNode>();
     parent = new HashMap<BFSNode, BFSNode>();
@@ -90,55 +116,221 @@ public class BFSSearch implements Search {
     reset();
   }
 
+  public Search newInstance() {
+    return new BFSSearch(env, operators, costFunctions);
+  }
+
   /**
    *@param startState
    *@param goalState
    *@return a sequence of states that represent the path from startState to goalState
    */
   public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    BFSNode bfsNode = sweep(startState, goalState);
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = extractSolution(bfsNode);
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, bfsNode != null ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Runs a single BFS sweep from startState that stops once every reachable goal state has been
+   * dequeued. All paths are extracted from the shared parent links.
+   *@param startState
+   *@param goalStates
+   *@return one sequence of states per goal state, in the order of goalStates
+   */
+  public ArrayList<ArrayList<State>> search(State startState, ArrayList<State> goalStates) {
+    long begin = SearchMetrics.clock(metrics);
+    HashMap<State, BFSNode> goalNodes = sweep(startState, goalStates);
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<ArrayList<State>> solutions = new ArrayList<ArrayList<State>>();
+    for (State goalState : goalStates) {
+      solutions.add(extractSolution(goalNodes.get(goalState)));
+    }
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, goalStates.size(),
+          solved(goalNodes, goalStates), listener);
+    }
+    return solutions;
+  }
+
+  /**
+   *@param startState
+   *@param goalState
+   *@return the cost of the path from startState to goalState, or UNREACHABLE
+   */
+  public long searchCost(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    costOnly = true;
+    BFSNode bfsNode;
+    try {
+      bfsNode = sweep(startState, goalState);
+    } finally {
+      costOnly = false;
+    }
+    if (metrics != null) {
+      metrics.finish(begin, 0, 1, bfsNode != null ? 1 : 0, listener);
+    }
+    return bfsNode != null ? bfsNode.getCost() : UNREACHABLE;
+  }
+
+  /**
+   *@param startState
+   *@param goalStates
+   *@return the cost of the path from startState to each goal state, or UNREACHABLE
+   */
+  public long[] searchCosts(State startState, ArrayList<State> goalStates) {
+    long begin = SearchMetrics.clock(metrics);
+    costOnly = true;
+    HashMap<State, BFSNode> goalNodes;
+    try {
+      goalNodes = sweep(startState, goalStates);
+    } finally {
+      costOnly = false;
+    }
+    long[] costs = new long[goalStates.size()];
+    for (int i = 0; i < costs.length; i++) {
+      BFSNode goalNode = goalNodes.get(goalStates.get(i));
+      costs[i] = goalNode != null ? goalNode.getCost() : UNREACHABLE;
+    }
+    if (metrics != null) {
+      metrics.finish(begin, 0, goalStates.size(), solved(goalNodes, goalStates), listener);
+    }
+    return costs;
+  }
+
+  /**
+   * Searches from startState until goalState is dequeued.
+   *@param startState
+   *@param goalState
+   *@return the goal node, or null if goalState cannot be reached
+   */
+  private BFSNode sweep(State startState, State goalState) {
     BFSNode bfsNode = new BFSNode(startState, 0);
     queue.addLast(bfsNode);
-    parent.put(bfsNode, null);
+    link(bfsNode, null);
     visited.add(startState);
 
-    boolean solutionFound = false;
-    BFSNode child = null;
-
     while (queue.isEmpty() == false) {
       bfsNode = queue.removeFirst();
-      //Note that startState will be updated every iteration.
-      startState = bfsNode.getState();
-      if (startState.equals(goalState)) {
-        solutionFound = true;
-        break;
+      if (bfsNode.getState().equals(goalState)) {
+        return bfsNode;
       } else {
-        //Explore next/adjacent/successor states 
-        State nextState;
-        for (Operator operator : operators) {
-          nextState = operator.apply(startState);
-          if (env.isValid(nextState) && env.canMove(startState, nextState)
-              && !visited.contains(nextState)) {
-            //Consider a state only if its valid and not visited.
-            long cost = bfsNode.getCost();
-            
-            //Calculate the cost incurred to reach this state
-            for (CostFunction cf : costFunctions) {
-              cost += cf.cost(startState, nextState);
-            }
-            //Generate a child node and add in queue for processing.
-            child = new BFSNode(nextState, cost);
-            queue.addLast(child);
-            //Parent references to extract path later.
-            parent.put(child, bfsNode);
-            visited.add(nextState);
-          }
+        expand(bfsNode);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Searches from startState until every reachable goal state has been dequeued.
+   *@param startState
+   *@param goalStates
+   *@return the node of each goal state that can be reached
+   */
+  private HashMap<State, BFSNode> sweep(State startState, ArrayList<State> goalStates) {
+    HashSet<State> pendingGoals = new HashSet<State>(goalStates);
+    HashMap<State, BFSNode> goalNodes = new HashMap<State, BFSNode>();
+    BFSNode bfsNode = new BFSNode(startState, 0);
+    queue.addLast(bfsNode);
+    link(bfsNode, null);
+    visited.add(startState);
+
+    while (queue.isEmpty() == false && pendingGoals.isEmpty() == false) {
+      bfsNode = queue.removeFirst();
+      if (pendingGoals.remove(bfsNode.getState())) {
+        goalNodes.put(bfsNode.getState(), bfsNode);
+      }
+      expand(bfsNode);
+    }
+    return goalNodes;
+  }
+
+  /**
+   *@return the number of goal states that have a goal node
+   */
+  private int solved(HashMap<State, BFSNode> goalNodes, ArrayList<State> goalStates) {
+    int solved = 0;
+    for (State goalState : goalStates) {
+      if (goalNodes.containsKey(goalState)) {
+        solved++;
+      }
+    }
+    return solved;
+  }
+
+  /**
+   * Keeps the parent reference of child, unless only costs are searched for.
+   *@param child
+   *@param bfsNode
+   */
+  private void link(BFSNode child, BFSNode bfsNode) {
+    if (costOnly == false) {
+      parent.put(child, bfsNode);
+    }
+  }
+
+  /**
+   * Explores next/adjacent/successor states of bfsNode and queues the unvisited ones.
+   *@param bfsNode
+   */
+  private void expand(BFSNode bfsNode) {
+    State startState = bfsNode.getState();
+    if (metrics != null) {
+      metrics.expanded++;
+    }
+    boolean masked = env.hasMoveMasks();
+    int moveMask = masked ? env.getMoveMask(startState.getX(), startState.getY()) : 0;
+    State nextState;
+    for (int i = 0; i < operators.size(); i++) {
+      if (masked && operatorBits[i] != 0) {
+        //Feasibility is precomputed. Skip infeasible moves without applying the operator.
+        if ((moveMask & operatorBits[i]) == 0) {
+          continue;
+        }
+        nextState = operators.get(i).apply(startState);
+      } else {
+        nextState = operators.get(i).apply(startState);
+        if (!env.isValid(nextState) || !env.canMove(startState, nextState)) {
+          continue;
+        }
+      }
+      if (metrics != null) {
+        metrics.generated++;
+      }
+      if (!visited.contains(nextState)) {
+        //Consider a state only if its valid and not visited.
+        long cost = bfsNode.getCost();
+
+        //Calculate the cost incurred to reach this state
+        for (CostFunction cf : costFunctions) {
+          cost += cf.cost(startState, nextState);
+        }
+        //Generate a child node and add in queue for processing.
+        BFSNode child = new BFSNode(nextState, cost);
+        queue.addLast(child);
+        //Parent references to extract path later.
+        link(child, bfsNode);
+        visited.add(nextState);
+        if (metrics != null) {
+          metrics.opened(queue.size());
         }
       }
     }
+  }
 
+  /**
+   *@param bfsNode : The goal node, or null if the goal was not reached
+   *@return a sequence of states that represent the path from the start state to bfsNode
+   */
+  private ArrayList<State> extractSolution(BFSNode bfsNode) {
     ArrayList<State> solution = new ArrayList<State>();
     long solutionCost = 0;
-    if (solutionFound == true) {
+    if (bfsNode != null) {
       solutionCost = bfsNode.getCost();
       while (bfsNode != null) {
         solution.add(bfsNode.getState());
@@ -147,7 +339,10 @@ public class BFSSearch implements Search {
     }
     Collections.reverse(solution);
 
-    System.out.println(solutionCost);
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
     return solution;
   }
+
 }
@@ -0,0 +1,388 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import operators.Directions;
+import operators.Operator;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * BidirectionalSearch runs a forward search from the start state and a backward search from
+ * the goal state until they meet, over primitive arrays laid out as in GridAStarSearch.
+ * Without heuristic cost functions it is bidirectional Dijkstra. With them it is bidirectional
+ * A* with average potentials: the forward search is ordered by
+ * 2 * cost + h(cell, goal) - h(start, cell) and the backward search by
+ * 2 * cost + h(start, cell) - h(cell, goal), which keeps both searches consistent so that the
+ * meet-in-the-middle stopping rule stays exact.
+ *
+ * Cost functions are not symmetric, as muddiness is charged on the entered cell. The backward
+ * search therefore always evaluates the forward move: reaching cell u from the cell v it expands
+ * costs cf.cost(u, v), not cf.cost(v, u).
+ */
+public class BidirectionalSearch implements Search {
+  //Cell status values
+  static final byte UNSEEN = 0;
+  static final byte OPEN = 1;
+  static final byte CLOSED = 2;
+  //Cost of the best path found so far when there is none.
+  static final long NO_PATH = Long.MAX_VALUE;
+
+  Environment env;
+  private final int nRows;
+  private final int nColumns;
+  //Row and column offsets of each operator, in operator order.
+  private final int[] dx;
+  private final int[] dy;
+  //Directions of the operators as a bitmask over Directions, or -1 if an operator is not a
+  //unit move. When set, successors are read off the environment's move masks.
+  private final int operatorMask;
+  //Directions opposite to the operators. A cell's predecessors lie in these directions.
+  private final int reverseMask;
+  ArrayList<Operator> operators;
+  //The cost function f(n)
+  private final CostFunction[] costFunctions;
+  //The hueristic g(n)
+  private final CostFunction[] heuristicCostFunctions;
+
+  //Cost from the start to a cell, and from a cell to the goal
+  private final long[] forwardCost;
+  private final long[] backwardCost;
+  //Parent links towards the start and towards the goal, -1 at the start and at the goal
+  private final int[] forwardParent;
+  private final int[] backwardParent;
+  //Open/closed status of a cell in each search
+  private final byte[] forwardStatus;
+  private final byte[] backwardStatus;
+  private final IndexedMinHeap forwardQueue;
+  private final IndexedMinHeap backwardQueue;
+
+  //Cost of the best path found so far, and the cell where its two halves meet
+  private long bestCost;
+  private int meeting;
+  //The query being searched
+  private int startX, startY, goalX, goalY;
+
+  private SearchListener listener;
+  private SearchMetrics metrics;
+  private boolean quiet;
+
+  /**
+   * @param env : The environment in which a goal needs to be searched.
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * @param costFunctions : Cost functions that define f(n)
+   * @param heuristicCostFunctions : Cost functions that define g(n). They must be consistent,
+   * and are also used as lower bounds of the cost from the start state to a cell.
+   */
+  public BidirectionalSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions) {
+    this.env = env;
+    this.operators = operators;
+    this.nRows = env.getNRows();
+    this.nColumns = env.getNColumns();
+    this.costFunctions = costFunctions.toArray(new CostFunction[0]);
+    this.heuristicCostFunctions = heuristicCostFunctions.toArray(new CostFunction[0]);
+
+    //Operators are only applied once here to learn their offsets.
+    dx = new int[operators.size()];
+    dy = new int[operators.size()];
+    State origin = new State(0, 0);
+    int mask = 0;
+    for (int i = 0; i < operators.size(); i++) {
+      State moved = operators.get(i).apply(origin);
+      dx[i] = moved.getX();
+      dy[i] = moved.getY();
+      int direction = Directions.indexOf(dx[i], dy[i]);
+      mask = (direction < 0 || mask < 0) ? -1 : mask | (1 << direction);
+    }
+    operatorMask = mask;
+    //Direction d + 4 is opposite to direction d.
+    reverseMask = mask < 0 ? -1 : ((mask << 4) | (mask >>> 4)) & 0xFF;
+
+    int nCells = nRows * nColumns;
+    forwardCost = new long[nCells];
+    backwardCost = new long[nCells];
+    forwardParent = new int[nCells];
+    backwardParent = new int[nCells];
+    forwardStatus = new byte[nCells];
+    backwardStatus = new byte[nCells];
+    forwardQueue = new IndexedMinHeap(nCells);
+    backwardQueue = new IndexedMinHeap(nCells);
+    reset();
+  }
+
+  public void reset() {
+    long begin = SearchMetrics.clock(metrics);
+    Arrays.fill(forwardStatus, UNSEEN);
+    Arrays.fill(backwardStatus, UNSEEN);
+    forwardQueue.clear();
+    backwardQueue.clear();
+    if (metrics != null) {
+      metrics.clear();
+      metrics.resetNanos = System.nanoTime() - begin;
+    }
+  }
+
+  public Search newInstance() {
+    return new BidirectionalSearch(env, operators,
+        new ArrayList<CostFunction>(Arrays.asList(costFunctions)),
+        new ArrayList<CostFunction>(Arrays.asList(heuristicCostFunctions)));
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+
+  /**
+   * Alternately expands the search with the smaller queue, and stops once the least forward
+   * priority plus the least backward priority is at least twice the cost of the best path found.
+   * @param startState
+   * @param goalState
+   * @return A sequence of states that correspond to the path from
+   * startState to endState
+   */
+  public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    startX = startState.getX();
+    startY = startState.getY();
+    goalX = goalState.getX();
+    goalY = goalState.getY();
+    int start = startX * nColumns + startY;
+    int goal = goalX * nColumns + goalY;
+
+    forwardCost[start] = 0;
+    forwardParent[start] = -1;
+    forwardStatus[start] = OPEN;
+    forwardQueue.insert(start, forwardPotential(startX, startY));
+    backwardCost[goal] = 0;
+    backwardParent[goal] = -1;
+    backwardStatus[goal] = OPEN;
+    backwardQueue.insert(goal, backwardPotential(goalX, goalY));
+    bestCost = start == goal ? 0 : NO_PATH;
+    meeting = start == goal ? start : -1;
+
+    while (forwardQueue.isEmpty() == false && backwardQueue.isEmpty() == false) {
+      if (bestCost != NO_PATH
+          && forwardQueue.peekPriority() + backwardQueue.peekPriority() >= 2 * bestCost) {
+        //Neither search can find a cheaper path.
+        break;
+      }
+      if (forwardQueue.size() <= backwardQueue.size()) {
+        int node = forwardQueue.poll();
+        forwardStatus[node] = CLOSED;
+        expandForward(node);
+      } else {
+        int node = backwardQueue.poll();
+        backwardStatus[node] = CLOSED;
+        expandBackward(node);
+      }
+    }
+
+    boolean solutionFound = bestCost != NO_PATH;
+    long solutionCost = solutionFound ? bestCost : 0;
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = extractSolution(solutionFound ? meeting : -1);
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, solutionFound ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Explores the successors of node in the forward search.
+   * @param node
+   */
+  private void expandForward(int node) {
+    int x = node / nColumns;
+    int y = node - x * nColumns;
+    if (metrics != null) {
+      metrics.expanded++;
+    }
+    if (operatorMask >= 0) {
+      //Only visit the feasible directions.
+      int mask = env.getMoveMask(x, y) & operatorMask;
+      while (mask != 0) {
+        int d = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+        relaxForward(node, x, y, x + Directions.DX[d], y + Directions.DY[d]);
+      }
+      return;
+    }
+    for (int d = 0; d < dx.length; d++) {
+      int nextX = x + dx[d];
+      int nextY = y + dy[d];
+      //Evaluate a cell only if it is feasible
+      if (env.isValid(nextX, nextY) && env.canMove(x, y, nextX, nextY)) {
+        relaxForward(node, x, y, nextX, nextY);
+      }
+    }
+  }
+
+  /**
+   * Explores the predecessors of node in the backward search, the cells from which an operator
+   * moves the agent onto node.
+   * @param node
+   */
+  private void expandBackward(int node) {
+    int x = node / nColumns;
+    int y = node - x * nColumns;
+    if (metrics != null) {
+      metrics.expanded++;
+    }
+    if (reverseMask >= 0) {
+      //canMove is symmetric, so a cell can move to node if node can move to it.
+      int mask = env.getMoveMask(x, y) & reverseMask;
+      while (mask != 0) {
+        int d = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+        relaxBackward(node, x, y, x + Directions.DX[d], y + Directions.DY[d]);
+      }
+      return;
+    }
+    for (int d = 0; d < dx.length; d++) {
+      int previousX = x - dx[d];
+      int previousY = y - dy[d];
+      //Evaluate a cell only if the move from it to node is feasible
+      if (env.isValid(previousX, previousY) && env.canMove(previousX, previousY, x, y)) {
+        relaxBackward(node, x, y, previousX, previousY);
+      }
+    }
+  }
+
+  /**
+   * Updates the cost from the start to (nextX,nextY) if it is cheaper through node at (x,y).
+   */
+  private void relaxForward(int node, int x, int y, int nextX, int nextY) {
+    int child = nextX * nColumns + nextY;
+    long childCost = forwardCost[node];
+    //Calculate costs incurred to reach this cell.
+    for (CostFunction cf : costFunctions) {
+      childCost += cf.cost(x, y, nextX, nextY);
+    }
+    if (metrics != null) {
+      metrics.generated++;
+    }
+    if (forwardStatus[child] == UNSEEN || childCost < forwardCost[child]) {
+      if (metrics != null) {
+        record(forwardStatus[child]);
+      }
+      forwardCost[child] = childCost;
+      forwardParent[child] = node;
+      forwardStatus[child] = OPEN;
+      forwardQueue.insertOrDecrease(child, 2 * childCost + forwardPotential(nextX, nextY));
+      if (metrics != null) {
+        metrics.opened(forwardQueue.size() + backwardQueue.size());
+      }
+      meet(child);
+    }
+  }
+
+  /**
+   * Updates the cost from (previousX,previousY) to the goal if it is cheaper through node at
+   * (x,y). The move is evaluated in the forward direction, from (previousX,previousY) to (x,y).
+   */
+  private void relaxBackward(int node, int x, int y, int previousX, int previousY) {
+    int child = previousX * nColumns + previousY;
+    long childCost = backwardCost[node];
+    //Calculate costs incurred to move from this cell to node.
+    for (CostFunction cf : costFunctions) {
+      childCost += cf.cost(previousX, previousY, x, y);
+    }
+    if (metrics != null) {
+      metrics.generated++;
+    }
+    if (backwardStatus[child] == UNSEEN || childCost < backwardCost[child]) {
+      if (metrics != null) {
+        record(backwardStatus[child]);
+      }
+      backwardCost[child] = childCost;
+      backwardParent[child] = node;
+      backwardStatus[child] = OPEN;
+      backwardQueue.insertOrDecrease(child, 2 * childCost + backwardPotential(previousX,
+          previousY));
+      if (metrics != null) {
+        metrics.opened(forwardQueue.size() + backwardQueue.size());
+      }
+      meet(child);
+    }
+  }
+
+  /**
+   * Records the path through cell if both searches have reached it and it is the cheapest
+   * path found so far.
+   * @param cell
+   */
+  private void meet(int cell) {
+    if (forwardStatus[cell] != UNSEEN && backwardStatus[cell] != UNSEEN
+        && forwardCost[cell] + backwardCost[cell] < bestCost) {
+      bestCost = forwardCost[cell] + backwardCost[cell];
+      meeting = cell;
+    }
+  }
+
+  /**
+   * @param meeting : The cell where the two halves of the path meet, or -1 if the goal was not
+   * reached
+   * @return A sequence of states that correspond to the path from the start state to the goal
+   * state
+   */
+  private ArrayList<State> extractSolution(int meeting) {
+    ArrayList<State> solution = new ArrayList<State>();
+    if (meeting == -1) {
+      return solution;
+    }
+    //Cells from the meeting cell back to the start, reversed.
+    for (int cell = meeting; cell != -1; cell = forwardParent[cell]) {
+      solution.add(new State(cell / nColumns, cell % nColumns));
+    }
+    Collections.reverse(solution);
+    //Cells after the meeting cell up to the goal.
+    for (int cell = backwardParent[meeting]; cell != -1; cell = backwardParent[cell]) {
+      solution.add(new State(cell / nColumns, cell % nColumns));
+    }
+    return solution;
+  }
+
+  /**
+   * @return Twice the potential of (x,y) in the forward search, h(cell, goal) - h(start, cell)
+   */
+  private long forwardPotential(int x, int y) {
+    long potential = 0;
+    for (CostFunction hcf : heuristicCostFunctions) {
+      potential += hcf.cost(x, y, goalX, goalY) - hcf.cost(startX, startY, x, y);
+    }
+    return potential;
+  }
+
+  /**
+   * @return Twice the potential of (x,y) in the backward search, the negated forward potential
+   */
+  private long backwardPotential(int x, int y) {
+    return -forwardPotential(x, y);
+  }
+
+  /**
+   * Counts an update of a cell that had status previous.
+   * @param previous
+   */
+  private void record(byte previous) {
+    if (previous == OPEN) {
+      metrics.decreasedKeys++;
+    } else if (previous == CLOSED) {
+      metrics.reopened++;
+    }
+  }
+
+}
@@ -0,0 +1,240 @@
+package search;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * BucketQueue is a circular bucket queue (Dial's algorithm) over integer keys in
+ * [0, capacity). There is one bucket per priority in a window [cursor, cursor + buckets), held
+ * as a doubly linked list of keys in primitive arrays, and a key goes in bucket
+ * priority mod buckets. Insert, decreaseKey and remove are O(1); poll steps the cursor to the
+ * next non-empty bucket, so a whole search polls in time proportional to the number of keys
+ * plus the largest priority.
+ *
+ * The window must be wider than the spread of the priorities in the queue. With Dijkstra that
+ * is the cost of the dearest move, and with A* and a consistent heuristic about twice that. The
+ * queue starts at the given width, and doubles it when a priority falls outside the window, so
+ * any priorities are accepted, only more slowly.
+ */
+public class BucketQueue implements CellQueue {
+  private static final int NONE = -1;
+
+  //First key of each bucket, or NONE
+  private int[] head;
+  private int mask;
+  //Next and previous key in the bucket of a key, or NONE
+  private final int[] next;
+  private final int[] previous;
+  //Key -> priority
+  private final long[] priority;
+  //Slot -> key, slots [0, size) in no particular order
+  private final int[] keys;
+  //Key -> slot, -1 if the key is not in the queue
+  private final int[] slot;
+  private int size;
+  //No priority in the queue is less than cursor or greater than maxPriority, and
+  //maxPriority - cursor < head.length.
+  private long cursor;
+  private long maxPriority;
+  //Number of times the window was widened
+  private int resizes;
+
+  /**
+   * @param capacity : Keys must lie in [0, capacity)
+   * @param span : Expected spread of the priorities in the queue, such as the cost of the
+   * dearest move
+   */
+  public BucketQueue(int capacity, long span) {
+    head = new int[buckets(span + 1)];
+    Arrays.fill(head, NONE);
+    mask = head.length - 1;
+    next = new int[capacity];
+    previous = new int[capacity];
+    priority = new long[capacity];
+    keys = new int[capacity];
+    slot = new int[capacity];
+    Arrays.fill(slot, -1);
+    size = 0;
+  }
+
+  /**
+   * @param width
+   * @return the least power of two not less than width
+   */
+  private static int buckets(long width) {
+    if (width > 1 << 30) {
+      throw new IllegalArgumentException("Priorities spread over " + width + " buckets");
+    }
+    int buckets = 1;
+    while (buckets < width) {
+      buckets <<= 1;
+    }
+    return buckets;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the number of buckets in the window
+   */
+  public int getBuckets() {
+    return head.length;
+  }
+
+  /**
+   * @return the number of times the window was widened
+   */
+  public int getResizes() {
+    return resizes;
+  }
+
+  public boolean contains(int key) {
+    return slot[key] >= 0;
+  }
+
+  public long priorityOf(int key) {
+    return priority[key];
+  }
+
+  public int keyAt(int keySlot) {
+    return keys[keySlot];
+  }
+
+  public int peek() {
+    advance();
+    return head[(int) (cursor & mask)];
+  }
+
+  public long peekPriority() {
+    advance();
+    return cursor;
+  }
+
+  public void insert(int key, long keyPriority) {
+    widen(keyPriority);
+    priority[key] = keyPriority;
+    slot[key] = size;
+    keys[size++] = key;
+    link(key);
+  }
+
+  public void decreaseKey(int key, long keyPriority) {
+    //Also O(1), and keeps key out of the way should the window widen.
+    remove(key);
+    insert(key, keyPriority);
+  }
+
+  public void insertOrDecrease(int key, long keyPriority) {
+    if (slot[key] < 0) {
+      insert(key, keyPriority);
+    } else if (keyPriority < priority[key]) {
+      decreaseKey(key, keyPriority);
+    }
+  }
+
+  public int poll() {
+    advance();
+    int top = head[(int) (cursor & mask)];
+    remove(top);
+    return top;
+  }
+
+  public void remove(int key) {
+    int keySlot = slot[key];
+    if (keySlot < 0) {
+      return;
+    }
+    unlink(key);
+    slot[key] = -1;
+    size--;
+    if (keySlot < size) {
+      int last = keys[size];
+      keys[keySlot] = last;
+      slot[last] = keySlot;
+    }
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      int key = keys[i];
+      slot[key] = -1;
+      head[(int) (priority[key] & mask)] = NONE;
+    }
+    size = 0;
+  }
+
+  /**
+   * Moves the cursor to the least priority in the queue.
+   * @throws NoSuchElementException if the queue is empty, where the scan would never end
+   */
+  private void advance() {
+    if (size == 0) {
+      throw new NoSuchElementException("Bucket queue is empty");
+    }
+    while (head[(int) (cursor & mask)] == NONE) {
+      cursor++;
+    }
+  }
+
+  /**
+   * Stretches the window to cover keyPriority, doubling the number of buckets until it does.
+   * @param keyPriority
+   */
+  private void widen(long keyPriority) {
+    if (size == 0) {
+      cursor = keyPriority;
+      maxPriority = keyPriority;
+      return;
+    }
+    long low = Math.min(cursor, keyPriority);
+    long high = Math.max(maxPriority, keyPriority);
+    if (high - low >= head.length) {
+      int[] wider = new int[buckets(high - low + 1)];
+      Arrays.fill(wider, NONE);
+      head = wider;
+      mask = wider.length - 1;
+      //Buckets depend on the priorities alone, so the keys can be linked again in any order.
+      for (int i = 0; i < size; i++) {
+        link(keys[i]);
+      }
+      resizes++;
+    }
+    cursor = low;
+    maxPriority = high;
+  }
+
+  /**
+   * Adds key at the front of its bucket, so that the latest of equal priorities comes first.
+   * @param key
+   */
+  private void link(int key) {
+    int bucket = (int) (priority[key] & mask);
+    int first = head[bucket];
+    next[key] = first;
+    previous[key] = NONE;
+    if (first != NONE) {
+      previous[first] = key;
+    }
+    head[bucket] = key;
+  }
+
+  private void unlink(int key) {
+    int before = previous[key];
+    int after = next[key];
+    if (before != NONE) {
+      next[before] = after;
+    } else {
+      head[(int) (priority[key] & mask)] = after;
+    }
+    if (after != NONE) {
+      previous[after] = before;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package search;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * CellQueue is a min-priority queue over integer keys in [0, capacity), typically cell indices
+ * x * NCOLUMNS + y, each present at most once. IndexedMinHeap works for any priorities;
+ * BucketQueue is faster when priorities are small integers that rise as the search proceeds.
+ */
+public interface CellQueue {
+
+  int size();
+
+  boolean isEmpty();
+
+  /**
+   * @param key
+   * @return true if key is currently in the queue
+   */
+  boolean contains(int key);
+
+  /**
+   * @param key
+   * @return priority of key. Only meaningful while key is in the queue.
+   */
+  long priorityOf(int key);
+
+  /**
+   * Keys are held in slots [0, size()), in no particular order.
+   * @param slot
+   * @return key held in slot
+   */
+  int keyAt(int slot);
+
+  /**
+   * @return the key with the least priority, without removing it
+   * @throws java.util.NoSuchElementException if the queue is empty
+   */
+  int peek();
+
+  /**
+   * @return the least priority in the queue
+   * @throws java.util.NoSuchElementException if the queue is empty
+   */
+  long peekPriority();
+
+  /**
+   * Adds key to the queue.
+   * @param key : A key that is not in the queue
+   * @param keyPriority
+   */
+  void insert(int key, long keyPriority);
+
+  /**
+   * Lowers the priority of a key already in the queue.
+   * @param key
+   * @param keyPriority : New priority, not greater than the current one
+   */
+  void decreaseKey(int key, long keyPriority);
+
+  /**
+   * Inserts key, or lowers its priority if it is already present with a higher priority.
+   * @param key
+   * @param keyPriority
+   */
+  void insertOrDecrease(int key, long keyPriority);
+
+  /**
+   * Removes and returns the key with the least priority.
+   * @return key
+   * @throws java.util.NoSuchElementException if the queue is empty
+   */
+  int poll();
+
+  /**
+   * Removes key from the queue if present.
+   * @param key
+   */
+  void remove(int key);
+
+  /**
+   * Empties the queue. Runs in time proportional to the number of keys present.
+   */
+  void clear();
+}
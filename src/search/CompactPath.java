@@ -0,0 +1,205 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import operators.Directions;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * CompactPath is a path stored as its start state and the direction of each step, 3 bits per
+ * step, 21 steps to a long. A path of n states takes about 3n / 8 bytes, against about 4n
+ * for an int array of cells and 20n or more for an ArrayList of States. States are decoded
+ * as they are iterated over. The empty path stands for FAIL. Instances are immutable.
+ */
+public final class CompactPath implements Iterable<State> {
+  //Path with no states, for a goal state that cannot be reached.
+  public static final CompactPath EMPTY = new CompactPath(0, 0, 0, 0, 0, new long[0]);
+  private static final int BITS = 3;
+  private static final int STEPS_PER_WORD = Long.SIZE / BITS;
+  private static final long MASK = (1L << BITS) - 1;
+
+  private final int startX;
+  private final int startY;
+  private final int goalX;
+  private final int goalY;
+  //Number of states, one more than the number of steps.
+  private final int size;
+  private final long[] steps;
+
+  private CompactPath(int startX, int startY, int goalX, int goalY, int size, long[] steps) {
+    this.startX = startX;
+    this.startY = startY;
+    this.goalX = goalX;
+    this.goalY = goalY;
+    this.size = size;
+    this.steps = steps;
+  }
+
+  /**
+   * @param path : Sequence of states, each one unit move from the one before. Empty for FAIL.
+   * @return path in compact form
+   * @throws IllegalArgumentException if two consecutive states are not one unit move apart
+   */
+  public static CompactPath encode(List<State> path) {
+    if (path.isEmpty()) {
+      return EMPTY;
+    }
+    long[] steps = new long[words(path.size() - 1)];
+    State previous = path.get(0);
+    for (int i = 1; i < path.size(); i++) {
+      State state = path.get(i);
+      int direction = Directions.indexOf(state.getX() - previous.getX(),
+          state.getY() - previous.getY());
+      if (direction < 0) {
+        throw new IllegalArgumentException("Not a unit move: " + previous + " to " + state);
+      }
+      put(steps, i - 1, direction);
+      previous = state;
+    }
+    State start = path.get(0);
+    return new CompactPath(start.getX(), start.getY(), previous.getX(), previous.getY(),
+        path.size(), steps);
+  }
+
+  /**
+   * Builds the path ending at cell straight from parent links, without State objects.
+   * @param parent : Parent cell of every cell, indexed by x * NCOLUMNS + y, -1 at the root.
+   * Each cell must be one unit move from its parent.
+   * @param cell : Last cell of the path when reverse is false, first cell otherwise
+   * @param nColumns
+   * @param reverse : false if the path runs from the root to cell, true if from cell to the root
+   * @return the path between the root and cell
+   */
+  public static CompactPath fromParents(int[] parent, int cell, int nColumns, boolean reverse) {
+    int size = 0;
+    int root = cell;
+    for (int c = cell; c != -1; c = parent[c]) {
+      size++;
+      root = c;
+    }
+    long[] steps = new long[words(size - 1)];
+    int i = 0;
+    for (int c = cell; parent[c] != -1; c = parent[c], i++) {
+      int from = reverse ? c : parent[c];
+      int to = reverse ? parent[c] : c;
+      int direction = Directions.indexOf(to / nColumns - from / nColumns,
+          to % nColumns - from % nColumns);
+      //Walking from cell, the steps of a forward path come last first.
+      put(steps, reverse ? i : size - 2 - i, direction);
+    }
+    int first = reverse ? cell : root;
+    int last = reverse ? root : cell;
+    return new CompactPath(first / nColumns, first % nColumns, last / nColumns,
+        last % nColumns, size, steps);
+  }
+
+  private static int words(int stepCount) {
+    return (stepCount + STEPS_PER_WORD - 1) / STEPS_PER_WORD;
+  }
+
+  private static void put(long[] steps, int step, int direction) {
+    steps[step / STEPS_PER_WORD] |= (long) direction << (step % STEPS_PER_WORD * BITS);
+  }
+
+  /**
+   * @param step
+   * @return the direction of step, as an index into Directions
+   */
+  public int getDirection(int step) {
+    if (step < 0 || step >= size - 1) {
+      throw new IndexOutOfBoundsException("Step " + step + " of " + (size - 1));
+    }
+    return (int) (steps[step / STEPS_PER_WORD] >>> (step % STEPS_PER_WORD * BITS) & MASK);
+  }
+
+  /**
+   * @return the number of states on the path, 0 for FAIL
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getStartX() {
+    return startX;
+  }
+
+  public int getStartY() {
+    return startY;
+  }
+
+  public int getGoalX() {
+    return goalX;
+  }
+
+  public int getGoalY() {
+    return goalY;
+  }
+
+  /**
+   * @return bytes taken by the step array
+   */
+  public long getBytes() {
+    return 8L * steps.length;
+  }
+
+  /**
+   * @return a new ArrayList of the states on the path
+   */
+  public ArrayList<State> decode() {
+    ArrayList<State> path = new ArrayList<State>(size);
+    for (State state : this) {
+      path.add(state);
+    }
+    return path;
+  }
+
+  /**
+   * @return an iterator that decodes one state at a time
+   */
+  @Override
+  public Iterator<State> iterator() {
+    return new Iterator<State>() {
+      private int next;
+      private int x = startX;
+      private int y = startY;
+
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      public State next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        if (next > 0) {
+          int direction = getDirection(next - 1);
+          x += Directions.DX[direction];
+          y += Directions.DY[direction];
+        }
+        next++;
+        return new State(x, y);
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    if (size == 0) {
+      return "[]";
+    }
+    return "[" + size + " states from (" + startX + "," + startY + ") to (" + goalX + ","
+        + goalY + ")]";
+  }
+}
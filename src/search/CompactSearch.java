@@ -0,0 +1,19 @@
+package search;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * CompactSearch enables implementors to return a path as a CompactPath, built straight from
+ * their parent links, without a State object per cell. As with search, the cost of the path is
+ * printed and reset is called before every call.
+ */
+public interface CompactSearch extends Search {
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return the path from startState to goalState, empty if goalState is unreachable
+   */
+  CompactPath searchCompact(State startState, State goalState);
+}
@@ -0,0 +1,32 @@
+package search;
+
+import java.util.ArrayList;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * CostSearch enables implementors to find the cost of the cheapest path between states without
+ * the path itself. Parent links are not kept and no path is extracted, so each node takes less
+ * memory, which matters when filling large distance matrices. Costs are returned instead of
+ * printed. As with search, reset is called before every call.
+ */
+public interface CostSearch extends Search {
+  //Cost of a goal state that cannot be reached.
+  long UNREACHABLE = ShortestPathTree.UNREACHABLE;
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return the cost of the cheapest path from startState to goalState, or UNREACHABLE
+   */
+  long searchCost(State startState, State goalState);
+
+  /**
+   * @param startState
+   * @param goalStates
+   * @return the cost of the cheapest path from startState to each goal state, in the order of
+   * goalStates, or UNREACHABLE
+   */
+  long[] searchCosts(State startState, ArrayList<State> goalStates);
+}
@@ -0,0 +1,446 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import operators.Directions;
+import operators.Operator;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * GridAStarSearch implements A* search over primitive arrays.
+ * Each cell (x,y) is encoded as x * NCOLUMNS + y, and the cost, parent and open/closed
+ * status of a cell are held in flat arrays sized from the environment. Expanding a node
+ * does not allocate. The running queue is an IndexedMinHeap, or a BucketQueue when costs are
+ * small integers.
+ */
+public class GridAStarSearch implements MultiGoalSearch, CostSearch, CompactSearch {
+  //Cell status values
+  static final byte UNSEEN = 0;
+  static final byte OPEN = 1;
+  static final byte CLOSED = 2;
+
+  Environment env;
+  private final int nRows;
+  private final int nColumns;
+  //Row and column offsets of each operator, in operator order.
+  private final int[] dx;
+  private final int[] dy;
+  //Directions of the operators as a bitmask over Directions, or -1 if an operator is not a
+  //unit move. When set, successors are read off the environment's move masks.
+  private final int operatorMask;
+  ArrayList<Operator> operators;
+  //The cost function f(n)
+  private final CostFunction[] costFunctions;
+  //The hueristic g(n)
+  private final CostFunction[] heuristicCostFunctions;
+
+  //Cost to reach a cell
+  private final long[] cost;
+  //Parent links, -1 for the start cell
+  private final int[] parent;
+  //Open/closed status of a cell
+  private final byte[] status;
+
+  //The running queue, keyed by cell and ordered by cost + heuristic.
+  private final CellQueue queue;
+  //Expected spread of the priorities of a bucket queue, or 0 for a binary heap.
+  private final long bucketSpan;
+
+  private SearchListener listener;
+  private SearchMetrics metrics;
+  private boolean quiet;
+
+  /**
+   * @param env : The environment in which a goal needs to be searched.
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * @param costFunctions : Cost functions that define f(n)
+   * @param heuristicCostFunctions : Cost functions that define g(n)
+   */
+  public GridAStarSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions) {
+    this(env, operators, costFunctions, heuristicCostFunctions, 0);
+  }
+
+  /**
+   * @param env : The environment in which a goal needs to be searched.
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * @param costFunctions : Cost functions that define f(n). Costs must be integers.
+   * @param heuristicCostFunctions : Cost functions that define g(n)
+   * @param bucketSpan : Spread of the priorities in the queue, such as the cost of the dearest
+   * move, to keep the queue in a BucketQueue of that many buckets, or 0 for an IndexedMinHeap.
+   */
+  public GridAStarSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions,
+      long bucketSpan) {
+    this.env = env;
+    this.operators = operators;
+    this.nRows = env.getNRows();
+    this.nColumns = env.getNColumns();
+    this.costFunctions = costFunctions.toArray(new CostFunction[0]);
+    this.heuristicCostFunctions = heuristicCostFunctions.toArray(new CostFunction[0]);
+
+    //Operators are only applied once here to learn their offsets.
+    dx = new int[operators.size()];
+    dy = new int[operators.size()];
+    State origin = new State(0, 0);
+    int mask = 0;
+    for (int i = 0; i < operators.size(); i++) {
+      State moved = operators.get(i).apply(origin);
+      dx[i] = moved.getX();
+      dy[i] = moved.getY();
+      int direction = Directions.indexOf(dx[i], dy[i]);
+      mask = (direction < 0 || mask < 0) ? -1 : mask | (1 << direction);
+    }
+    operatorMask = mask;
+
+    int nCells = nRows * nColumns;
+    cost = new long[nCells];
+    parent = new int[nCells];
+    status = new byte[nCells];
+    this.bucketSpan = bucketSpan;
+    queue = bucketSpan > 0 ? new BucketQueue(nCells, bucketSpan) : new IndexedMinHeap(nCells);
+    reset();
+  }
+
+  public void reset() {
+    long begin = SearchMetrics.clock(metrics);
+    Arrays.fill(status, UNSEEN);
+    queue.clear();
+    if (metrics != null) {
+      metrics.clear();
+      metrics.resetNanos = System.nanoTime() - begin;
+    }
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+
+  public Search newInstance() {
+    return new GridAStarSearch(env, operators,
+        new ArrayList<CostFunction>(Arrays.asList(costFunctions)),
+        new ArrayList<CostFunction>(Arrays.asList(heuristicCostFunctions)), bucketSpan);
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return A sequence of states that correspond to the path from
+   * startState to endState
+   */
+  public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    int goal = sweep(startState, goalState);
+    long solutionCost = goal != -1 ? cost[goal] : 0;
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = extractSolution(goal);
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, goal != -1 ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return the path from startState to goalState, read off the parent array
+   */
+  public CompactPath searchCompact(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    int goal = sweep(startState, goalState);
+    long solutionCost = goal != -1 ? cost[goal] : 0;
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
+    long extractBegin = SearchMetrics.clock(metrics);
+    CompactPath solution = goal != -1 ? CompactPath.fromParents(parent, goal, nColumns, false)
+        : CompactPath.EMPTY;
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, goal != -1 ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Searches for all goal states from startState while reusing cost, parent and status arrays
+   * across goals. Goals are visited in increasing heuristic distance from startState. Before
+   * each goal the running queue is re-prioritised with the heuristic towards that goal, and the
+   * goal is settled once its cost is no more than the least priority in the queue.
+   * @param startState
+   * @param goalStates
+   * @return one sequence of states per goal state, in the order of goalStates
+   */
+  public ArrayList<ArrayList<State>> search(State startState, ArrayList<State> goalStates) {
+    HashMap<State, ArrayList<State>> solutions = new HashMap<State, ArrayList<State>>();
+    HashMap<State, Long> solutionCosts = sweep(startState, goalStates, solutions);
+    ArrayList<ArrayList<State>> result = new ArrayList<ArrayList<State>>();
+    for (State goalState : goalStates) {
+      long solutionCost = solutionCosts.get(goalState);
+      if (quiet == false) {
+        System.out.println(solutionCost != UNREACHABLE ? solutionCost : 0);
+      }
+      result.add(solutions.get(goalState));
+    }
+    return result;
+  }
+
+  /**
+   * The parent array is allocated with the search, so this only saves extracting the path.
+   * @param startState
+   * @param goalState
+   * @return the cost of the cheapest path from startState to goalState, or UNREACHABLE
+   */
+  public long searchCost(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    int goal = sweep(startState, goalState);
+    if (metrics != null) {
+      metrics.finish(begin, 0, 1, goal != -1 ? 1 : 0, listener);
+    }
+    return goal != -1 ? cost[goal] : UNREACHABLE;
+  }
+
+  /**
+   * Searches for the costs of all goal states as search does for their paths.
+   * @param startState
+   * @param goalStates
+   * @return the cost of the cheapest path from startState to each goal state, or UNREACHABLE
+   */
+  public long[] searchCosts(State startState, ArrayList<State> goalStates) {
+    HashMap<State, Long> solutionCosts = sweep(startState, goalStates, null);
+    long[] costs = new long[goalStates.size()];
+    for (int i = 0; i < costs.length; i++) {
+      costs[i] = solutionCosts.get(goalStates.get(i));
+    }
+    return costs;
+  }
+
+  /**
+   * Searches from startState until the goal cell leaves the queue.
+   * @param startState
+   * @param goalState
+   * @return the goal cell, or -1 if goalState cannot be reached
+   */
+  private int sweep(State startState, State goalState) {
+    int goalX = goalState.getX();
+    int goalY = goalState.getY();
+    int goal = goalX * nColumns + goalY;
+    int start = startState.getX() * nColumns + startState.getY();
+
+    cost[start] = 0;
+    parent[start] = -1;
+    status[start] = OPEN;
+    queue.insert(start, heuristic(startState.getX(), startState.getY(), goalX, goalY));
+
+    while (queue.isEmpty() == false) {
+      int node = queue.poll();
+      //If goal found, break
+      if (node == goal) {
+        return goal;
+      }
+      status[node] = CLOSED;
+      expand(node, goalX, goalY);
+    }
+    return -1;
+  }
+
+  /**
+   * Searches for every goal state in turn, as described in search, and reports the metrics.
+   * @param startState
+   * @param goalStates
+   * @param solutions : Receives the path to each goal state, or null for costs only
+   * @return the cost of each goal state, or UNREACHABLE
+   */
+  private HashMap<State, Long> sweep(final State startState, ArrayList<State> goalStates,
+      HashMap<State, ArrayList<State>> solutions) {
+    ArrayList<State> orderedGoals = new ArrayList<State>(goalStates);
+    Collections.sort(orderedGoals, new Comparator<State>() {
+      public int compare(State goal1, State goal2) {
+        return Long.compare(
+            heuristic(startState.getX(), startState.getY(), goal1.getX(), goal1.getY()),
+            heuristic(startState.getX(), startState.getY(), goal2.getX(), goal2.getY()));
+      }
+    });
+
+    long begin = SearchMetrics.clock(metrics);
+    long extractNanos = 0;
+    int start = startState.getX() * nColumns + startState.getY();
+    cost[start] = 0;
+    parent[start] = -1;
+    status[start] = OPEN;
+    queue.insert(start, 0);
+
+    HashMap<State, Long> solutionCosts = new HashMap<State, Long>();
+    for (State goalState : orderedGoals) {
+      if (solutionCosts.containsKey(goalState)) {
+        continue;
+      }
+      int goalX = goalState.getX();
+      int goalY = goalState.getY();
+      int goal = goalX * nColumns + goalY;
+      reprioritise(goalX, goalY);
+      boolean solutionFound = false;
+      while (true) {
+        if (status[goal] != UNSEEN && (queue.isEmpty() || cost[goal] <= queue.peekPriority())) {
+          //No cell left in the queue can lead to a cheaper path to goal.
+          solutionFound = true;
+          break;
+        }
+        if (queue.isEmpty()) {
+          break;
+        }
+        int node = queue.poll();
+        status[node] = CLOSED;
+        expand(node, goalX, goalY);
+      }
+      if (solutions != null) {
+        //Extract now, as later goals may reopen cells on this path.
+        long extractBegin = SearchMetrics.clock(metrics);
+        solutions.put(goalState, extractSolution(solutionFound ? goal : -1));
+        extractNanos += SearchMetrics.clock(metrics) - extractBegin;
+      }
+      solutionCosts.put(goalState, solutionFound ? cost[goal] : UNREACHABLE);
+    }
+
+    if (metrics != null) {
+      int solved = 0;
+      for (State goalState : goalStates) {
+        if (solutionCosts.get(goalState) != UNREACHABLE) {
+          solved++;
+        }
+      }
+      metrics.finish(begin, extractNanos, goalStates.size(), solved, listener);
+    }
+    return solutionCosts;
+  }
+
+  /**
+   * Explores next/adjacent/successor cells of node and updates the running queue.
+   * @param node
+   * @param goalX
+   * @param goalY
+   */
+  private void expand(int node, int goalX, int goalY) {
+    int x = node / nColumns;
+    int y = node - x * nColumns;
+    if (metrics != null) {
+      metrics.expanded++;
+    }
+    if (operatorMask >= 0) {
+      //Only visit the feasible directions.
+      int mask = env.getMoveMask(x, y) & operatorMask;
+      while (mask != 0) {
+        int d = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+        relax(node, x, y, x + Directions.DX[d], y + Directions.DY[d], goalX, goalY);
+      }
+      return;
+    }
+    for (int d = 0; d < dx.length; d++) {
+      int nextX = x + dx[d];
+      int nextY = y + dy[d];
+      //Evaluate a cell only if it is feasible
+      if (env.isValid(nextX, nextY) && env.canMove(x, y, nextX, nextY)) {
+        relax(node, x, y, nextX, nextY, goalX, goalY);
+      }
+    }
+  }
+
+  /**
+   * Updates the cost of (nextX,nextY) if it is cheaper to reach through node at (x,y).
+   */
+  private void relax(int node, int x, int y, int nextX, int nextY, int goalX, int goalY) {
+    int child = nextX * nColumns + nextY;
+    long childCost = cost[node];
+    //Calculate costs incurred to reach this cell.
+    for (CostFunction cf : costFunctions) {
+      childCost += cf.cost(x, y, nextX, nextY);
+    }
+    if (metrics != null) {
+      metrics.generated++;
+    }
+    if (status[child] == UNSEEN || childCost < cost[child]) {
+      //child unexplored till now, or found a better path to child. Hence, update.
+      //A closed child is reopened.
+      if (metrics != null) {
+        record(status[child]);
+      }
+      long priority = childCost + heuristic(nextX, nextY, goalX, goalY);
+      cost[child] = childCost;
+      parent[child] = node;
+      status[child] = OPEN;
+      queue.insertOrDecrease(child, priority);
+      if (metrics != null) {
+        metrics.opened(queue.size());
+      }
+    }
+  }
+
+  /**
+   * Counts an update of a cell that had status previous.
+   * @param previous
+   */
+  private void record(byte previous) {
+    if (previous == OPEN) {
+      metrics.decreasedKeys++;
+    } else if (previous == CLOSED) {
+      metrics.reopened++;
+    }
+  }
+
+  /**
+   * Recomputes the priority of every cell in the running queue towards (goalX,goalY).
+   */
+  private void reprioritise(int goalX, int goalY) {
+    int[] cells = new int[queue.size()];
+    for (int slot = 0; slot < cells.length; slot++) {
+      cells[slot] = queue.keyAt(slot);
+    }
+    queue.clear();
+    for (int cell : cells) {
+      int x = cell / nColumns;
+      int y = cell - x * nColumns;
+      queue.insert(cell, cost[cell] + heuristic(x, y, goalX, goalY));
+    }
+  }
+
+  /**
+   * @param goal : The goal cell, or -1 if the goal was not reached
+   * @return A sequence of states that correspond to the path from the start state to goal
+   */
+  private ArrayList<State> extractSolution(int goal) {
+    ArrayList<State> solution = new ArrayList<State>();
+    for (int cell = goal; cell != -1; cell = parent[cell]) {
+      solution.add(new State(cell / nColumns, cell % nColumns));
+    }
+
+    //solution contains cells from goal to start. Hence, reverse before returning.
+    Collections.reverse(solution);
+    return solution;
+  }
+
+  /**
+   * @return Costs that will incur according to heuristics from (x,y) to (goalX,goalY)
+   */
+  private long heuristic(int x, int y, int goalX, int goalY) {
+    long heuristicCost = 0;
+    for (CostFunction hcf : heuristicCostFunctions) {
+      heuristicCost += hcf.cost(x, y, goalX, goalY);
+    }
+    return heuristicCost;
+  }
+}
@@ -0,0 +1,707 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import environment.TerrainListener;
+import operators.Operator;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * HierarchicalSearch implements HPA* (hierarchical path-finding A*). The terrain is cut into
+ * square clusters of clusterSize cells. Where the agent can step straight across the border of
+ * two clusters, the border is an entrance, and one or two cell pairs on it become nodes of an
+ * abstract graph. Within a cluster, every pair of nodes is joined by the cost of the cheapest
+ * path that stays inside the cluster, computed once when the engine is built.
+ *
+ * A search links the start and goal states to the nodes of their clusters, runs A* on the
+ * abstract graph, and then refines each abstract edge into cells with a search bounded to one
+ * cluster. Only the clusters on the path are searched cell by cell, so memory stays at a few
+ * arrays per cluster plus the abstract graph. Paths are valid but may cost more than the
+ * optimum, as they cross cluster borders only at entrances. If the abstract graph has no
+ * path, which can happen when a cluster is split in two by rocks, the search falls back to
+ * GridAStarSearch so that a path is found whenever one exists. When the terrain changes, the
+ * abstract graph is built again by the next search.
+ */
+public class HierarchicalSearch implements Search {
+  public static final int DEFAULT_CLUSTER_SIZE = 32;
+  //Entrances at least this long get a node pair at both ends instead of one in the middle.
+  static final int LONG_ENTRANCE = 6;
+  static final long UNREACHABLE = Long.MAX_VALUE;
+
+  Environment env;
+  ArrayList<Operator> operators;
+  private final int nRows;
+  private final int nColumns;
+  private final int clusterSize;
+  private final int clusterColumns;
+  //Row and column offsets of each operator, in operator order.
+  private final int[] dx;
+  private final int[] dy;
+  //The cost function f(n)
+  private final CostFunction[] costFunctions;
+  //The hueristic g(n)
+  private final CostFunction[] heuristicCostFunctions;
+  //Abstract graph, shared by the instances returned by newInstance.
+  private final SharedGraph shared;
+  //Abstract graph the search state below is sized for.
+  private AbstractGraph graph;
+
+  //Search over one cluster, used to link and refine.
+  private final ClusterSearch clusterSearch;
+  //Abstract search state. The start node is graph.size() and the goal node graph.size() + 1.
+  private long[] nodeCost;
+  private int[] nodeParent;
+  private boolean[] closed;
+  private IndexedMinHeap queue;
+  //Full search used when the abstract graph has no path. Created on first use.
+  private GridAStarSearch fallback;
+  //Number of searches answered by fallback.
+  private long fallbacks;
+
+  private SearchListener listener;
+  private SearchMetrics metrics;
+  private boolean quiet;
+
+  /**
+   * Builds the abstract graph. Clusters are linked in parallel.
+   * @param env : The environment in which a goal needs to be searched. The search listens to
+   * its terrain until it is closed.
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * Must include the 4 straight unit moves, as entrances are crossed straight.
+   * @param costFunctions : Cost functions that define f(n)
+   * @param heuristicCostFunctions : Cost functions that define g(n)
+   * @param clusterSize : Width and height of a cluster in cells
+   */
+  public HierarchicalSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions,
+      int clusterSize) {
+    this(env, operators, costFunctions, heuristicCostFunctions, clusterSize, null);
+    env.addTerrainListener(shared);
+  }
+
+  private HierarchicalSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions,
+      int clusterSize, SharedGraph shared) {
+    if (clusterSize < 1) {
+      throw new IllegalArgumentException("Cluster size must be positive: " + clusterSize);
+    }
+    this.env = env;
+    this.operators = operators;
+    this.nRows = env.getNRows();
+    this.nColumns = env.getNColumns();
+    this.clusterSize = clusterSize;
+    this.clusterColumns = (nColumns + clusterSize - 1) / clusterSize;
+    this.costFunctions = costFunctions.toArray(new CostFunction[0]);
+    this.heuristicCostFunctions = heuristicCostFunctions.toArray(new CostFunction[0]);
+
+    //Operators are only applied once here to learn their offsets.
+    dx = new int[operators.size()];
+    dy = new int[operators.size()];
+    State origin = new State(0, 0);
+    for (int i = 0; i < operators.size(); i++) {
+      State moved = operators.get(i).apply(origin);
+      dx[i] = moved.getX();
+      dy[i] = moved.getY();
+    }
+
+    if (shared == null) {
+      shared = new SharedGraph();
+      shared.graph = buildGraph();
+    }
+    this.shared = shared;
+    clusterSearch = new ClusterSearch();
+    refreshGraph();
+    reset();
+  }
+
+  public void reset() {
+    long begin = SearchMetrics.clock(metrics);
+    queue.clear();
+    if (metrics != null) {
+      metrics.clear();
+      metrics.resetNanos = System.nanoTime() - begin;
+    }
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+
+  public Search newInstance() {
+    return new HierarchicalSearch(env, operators,
+        new ArrayList<CostFunction>(Arrays.asList(costFunctions)),
+        new ArrayList<CostFunction>(Arrays.asList(heuristicCostFunctions)), clusterSize,
+        shared);
+  }
+
+  /**
+   * Stops the abstract graph following the terrain. Instances made from this search by
+   * newInstance share the graph, so they must not be used afterwards either.
+   */
+  @Override
+  public void close() {
+    env.removeTerrainListener(shared);
+  }
+
+  /**
+   * Builds the abstract graph again if the terrain changed since it was built, and sizes the
+   * abstract search state to the current graph.
+   */
+  private void refreshGraph() {
+    if (shared.stale) {
+      synchronized (shared) {
+        if (shared.stale) {
+          shared.graph = buildGraph();
+          shared.stale = false;
+        }
+      }
+    }
+    if (graph == shared.graph) {
+      return;
+    }
+    graph = shared.graph;
+    int nodes = graph.size() + 2;
+    nodeCost = new long[nodes];
+    nodeParent = new int[nodes];
+    closed = new boolean[nodes];
+    queue = new IndexedMinHeap(nodes);
+  }
+
+  /**
+   * @return number of nodes in the abstract graph
+   */
+  public int getAbstractNodes() {
+    refreshGraph();
+    return graph.size();
+  }
+
+  /**
+   * @return number of edges in the abstract graph
+   */
+  public long getAbstractEdges() {
+    refreshGraph();
+    long edges = 0;
+    for (int[] targets : graph.edgeTarget) {
+      edges += targets.length;
+    }
+    return edges;
+  }
+
+  /**
+   * @return number of searches of this instance that fell back to GridAStarSearch
+   */
+  public long getFallbacks() {
+    return fallbacks;
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return A sequence of states that correspond to the path from
+   * startState to endState
+   */
+  public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    refreshGraph();
+    int startX = startState.getX();
+    int startY = startState.getY();
+    int goalX = goalState.getX();
+    int goalY = goalState.getY();
+    int startCluster = clusterOf(startX, startY);
+    int goalCluster = clusterOf(goalX, goalY);
+    int startNode = graph.size();
+    int goalNode = startNode + 1;
+
+    //Link the start state to the nodes of its cluster, and to the goal state if they share it.
+    int[] startLinks = graph.clusterNodes[startCluster];
+    long[] startCosts = new long[startLinks.length];
+    clusterSearch.run(startCluster, startX, startY, false);
+    for (int i = 0; i < startLinks.length; i++) {
+      startCosts[i] = clusterSearch.cost(graph.nodeCell[startLinks[i]]);
+    }
+    long directCost = startCluster == goalCluster
+        ? clusterSearch.cost(goalX * nColumns + goalY) : UNREACHABLE;
+    //Link the nodes of the goal cluster to the goal state.
+    int[] goalLinks = graph.clusterNodes[goalCluster];
+    long[] goalCosts = new long[goalLinks.length];
+    clusterSearch.run(goalCluster, goalX, goalY, true);
+    for (int i = 0; i < goalLinks.length; i++) {
+      goalCosts[i] = clusterSearch.cost(graph.nodeCell[goalLinks[i]]);
+    }
+
+    Arrays.fill(nodeCost, UNREACHABLE);
+    Arrays.fill(closed, false);
+    nodeCost[startNode] = 0;
+    nodeParent[startNode] = -1;
+    queue.insert(startNode, 0);
+    boolean solutionFound = false;
+    while (queue.isEmpty() == false) {
+      int node = queue.poll();
+      if (node == goalNode) {
+        solutionFound = true;
+        break;
+      }
+      closed[node] = true;
+      if (metrics != null) {
+        metrics.expanded++;
+      }
+      if (node == startNode) {
+        for (int i = 0; i < startLinks.length; i++) {
+          relax(node, startLinks[i], startCosts[i], goalX, goalY);
+        }
+        relax(node, goalNode, directCost, goalX, goalY);
+        continue;
+      }
+      int[] targets = graph.edgeTarget[node];
+      long[] costs = graph.edgeCost[node];
+      for (int i = 0; i < targets.length; i++) {
+        relax(node, targets[i], costs[i], goalX, goalY);
+      }
+      int cell = graph.nodeCell[node];
+      if (clusterOf(cell / nColumns, cell % nColumns) == goalCluster) {
+        relax(node, goalNode, goalCosts[graph.indexInCluster[node]], goalX, goalY);
+      }
+    }
+    queue.clear();
+
+    if (solutionFound == false) {
+      //The abstract graph missed a connection, or there is no path at all.
+      return searchFallback(startState, goalState);
+    }
+
+    //Abstract path as cells, from start to goal.
+    ArrayList<Integer> cells = new ArrayList<Integer>();
+    for (int node = goalNode; node != -1; node = nodeParent[node]) {
+      cells.add(node == goalNode ? goalX * nColumns + goalY
+          : node == startNode ? startX * nColumns + startY : graph.nodeCell[node]);
+    }
+    Collections.reverse(cells);
+
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = new ArrayList<State>();
+    solution.add(startState);
+    long solutionCost = 0;
+    for (int i = 0; i + 1 < cells.size(); i++) {
+      int from = cells.get(i);
+      int to = cells.get(i + 1);
+      if (from == to) {
+        continue;
+      }
+      int fromX = from / nColumns;
+      int fromY = from % nColumns;
+      int toX = to / nColumns;
+      int toY = to % nColumns;
+      int cluster = clusterOf(fromX, fromY);
+      if (cluster == clusterOf(toX, toY)) {
+        //Edge within a cluster.
+        clusterSearch.run(cluster, fromX, fromY, false);
+        long edgeCost = clusterSearch.cost(to);
+        if (edgeCost == UNREACHABLE) {
+          return searchFallback(startState, goalState);
+        }
+        solutionCost += edgeCost;
+        clusterSearch.appendPath(to, solution);
+      } else if (env.canMove(fromX, fromY, toX, toY)) {
+        //Step across an entrance.
+        solutionCost += moveCost(fromX, fromY, toX, toY);
+        solution.add(new State(toX, toY));
+      } else {
+        //The edge no longer matches the terrain. Never print a path the agent cannot follow.
+        return searchFallback(startState, goalState);
+      }
+    }
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, 1, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Searches the whole terrain with GridAStarSearch, which reports its own metrics.
+   * @param startState
+   * @param goalState
+   * @return the path found by the full search
+   */
+  private ArrayList<State> searchFallback(State startState, State goalState) {
+    if (fallback == null) {
+      fallback = new GridAStarSearch(env, operators,
+          new ArrayList<CostFunction>(Arrays.asList(costFunctions)),
+          new ArrayList<CostFunction>(Arrays.asList(heuristicCostFunctions)));
+    }
+    fallbacks++;
+    fallback.setListener(listener);
+    fallback.setQuiet(quiet);
+    fallback.reset();
+    return fallback.search(startState, goalState);
+  }
+
+  /**
+   * Updates the cost of abstract node next if it is cheaper to reach through node.
+   */
+  private void relax(int node, int next, long edgeCost, int goalX, int goalY) {
+    if (edgeCost == UNREACHABLE || closed[next]) {
+      return;
+    }
+    if (metrics != null) {
+      metrics.generated++;
+    }
+    long nextCost = nodeCost[node] + edgeCost;
+    if (nextCost < nodeCost[next]) {
+      if (metrics != null && nodeCost[next] != UNREACHABLE) {
+        metrics.decreasedKeys++;
+      }
+      nodeCost[next] = nextCost;
+      nodeParent[next] = node;
+      long priority = nextCost;
+      if (next < graph.size()) {
+        int cell = graph.nodeCell[next];
+        priority += heuristic(cell / nColumns, cell % nColumns, goalX, goalY);
+      }
+      queue.insertOrDecrease(next, priority);
+      if (metrics != null) {
+        metrics.opened(queue.size());
+      }
+    }
+  }
+
+  /**
+   * @return the cluster of (x,y), numbered row by row
+   */
+  private int clusterOf(int x, int y) {
+    return (x / clusterSize) * clusterColumns + y / clusterSize;
+  }
+
+  /**
+   * @return the cost of a single move from (x,y) to (nextX,nextY)
+   */
+  private long moveCost(int x, int y, int nextX, int nextY) {
+    long moveCost = 0;
+    for (CostFunction cf : costFunctions) {
+      moveCost += cf.cost(x, y, nextX, nextY);
+    }
+    return moveCost;
+  }
+
+  /**
+   * @return Costs that will incur according to heuristics from (x,y) to (goalX,goalY)
+   */
+  private long heuristic(int x, int y, int goalX, int goalY) {
+    long heuristicCost = 0;
+    for (CostFunction hcf : heuristicCostFunctions) {
+      heuristicCost += hcf.cost(x, y, goalX, goalY);
+    }
+    return heuristicCost;
+  }
+
+  /**
+   * Finds the entrances between every pair of neighbouring clusters, then links the nodes of
+   * each cluster to each other.
+   * @return the abstract graph
+   */
+  private AbstractGraph buildGraph() {
+    int clusterRows = (nRows + clusterSize - 1) / clusterSize;
+    HashMap<Integer, Integer> nodeOfCell = new HashMap<Integer, Integer>();
+    ArrayList<Integer> nodeCells = new ArrayList<Integer>();
+    ArrayList<ArrayList<Integer>> targets = new ArrayList<ArrayList<Integer>>();
+    ArrayList<ArrayList<Long>> costs = new ArrayList<ArrayList<Long>>();
+    ArrayList<ArrayList<Integer>> nodesOfCluster = new ArrayList<ArrayList<Integer>>();
+    for (int c = 0; c < clusterRows * clusterColumns; c++) {
+      nodesOfCluster.add(new ArrayList<Integer>());
+    }
+
+    for (int row = 0; row < clusterRows; row++) {
+      for (int column = 0; column < clusterColumns; column++) {
+        int x0 = row * clusterSize;
+        int y0 = column * clusterSize;
+        int height = Math.min(clusterSize, nRows - x0);
+        int width = Math.min(clusterSize, nColumns - y0);
+        //Border with the cluster below.
+        if (x0 + height < nRows) {
+          int x = x0 + height - 1;
+          int runStart = -1;
+          for (int y = y0; y <= y0 + width; y++) {
+            boolean open = y < y0 + width && env.canMove(x, y, x + 1, y);
+            if (open && runStart == -1) {
+              runStart = y;
+            } else if (open == false && runStart != -1) {
+              for (int t : transitions(runStart, y - 1)) {
+                link(x, t, x + 1, t, nodeOfCell, nodeCells, targets, costs, nodesOfCluster);
+              }
+              runStart = -1;
+            }
+          }
+        }
+        //Border with the cluster to the right.
+        if (y0 + width < nColumns) {
+          int y = y0 + width - 1;
+          int runStart = -1;
+          for (int x = x0; x <= x0 + height; x++) {
+            boolean open = x < x0 + height && env.canMove(x, y, x, y + 1);
+            if (open && runStart == -1) {
+              runStart = x;
+            } else if (open == false && runStart != -1) {
+              for (int t : transitions(runStart, x - 1)) {
+                link(t, y, t, y + 1, nodeOfCell, nodeCells, targets, costs, nodesOfCluster);
+              }
+              runStart = -1;
+            }
+          }
+        }
+      }
+    }
+
+    final AbstractGraph graph = new AbstractGraph(nodeCells.size(), nodesOfCluster.size());
+    for (int node = 0; node < graph.size(); node++) {
+      graph.nodeCell[node] = nodeCells.get(node);
+    }
+    for (int c = 0; c < nodesOfCluster.size(); c++) {
+      ArrayList<Integer> nodes = nodesOfCluster.get(c);
+      graph.clusterNodes[c] = new int[nodes.size()];
+      for (int i = 0; i < nodes.size(); i++) {
+        graph.clusterNodes[c][i] = nodes.get(i);
+        graph.indexInCluster[nodes.get(i)] = i;
+      }
+    }
+
+    //Cost between every ordered pair of nodes in a cluster, UNREACHABLE if there is no path
+    //inside the cluster.
+    final long[][][] intra = new long[graph.clusterNodes.length][][];
+    final ThreadLocal<ClusterSearch> searches = new ThreadLocal<ClusterSearch>() {
+      @Override
+      protected ClusterSearch initialValue() {
+        return new ClusterSearch();
+      }
+    };
+    IntStream.range(0, intra.length).parallel().forEach(c -> {
+      ClusterSearch search = searches.get();
+      int[] nodes = graph.clusterNodes[c];
+      intra[c] = new long[nodes.length][nodes.length];
+      for (int i = 0; i < nodes.length; i++) {
+        int cell = graph.nodeCell[nodes[i]];
+        search.run(c, cell / nColumns, cell % nColumns, false);
+        for (int j = 0; j < nodes.length; j++) {
+          intra[c][i][j] = search.cost(graph.nodeCell[nodes[j]]);
+        }
+      }
+    });
+    for (int c = 0; c < intra.length; c++) {
+      int[] nodes = graph.clusterNodes[c];
+      for (int i = 0; i < nodes.length; i++) {
+        for (int j = 0; j < nodes.length; j++) {
+          if (i != j && intra[c][i][j] != UNREACHABLE) {
+            targets.get(nodes[i]).add(nodes[j]);
+            costs.get(nodes[i]).add(intra[c][i][j]);
+          }
+        }
+      }
+    }
+
+    for (int node = 0; node < graph.size(); node++) {
+      ArrayList<Integer> nodeTargets = targets.get(node);
+      ArrayList<Long> nodeCosts = costs.get(node);
+      graph.edgeTarget[node] = new int[nodeTargets.size()];
+      graph.edgeCost[node] = new long[nodeTargets.size()];
+      for (int i = 0; i < nodeTargets.size(); i++) {
+        graph.edgeTarget[node][i] = nodeTargets.get(i);
+        graph.edgeCost[node][i] = nodeCosts.get(i);
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * @param first : First position of an entrance along the border
+   * @param last : Last position of the entrance
+   * @return positions of the entrance that get a node pair
+   */
+  private static int[] transitions(int first, int last) {
+    if (last - first + 1 >= LONG_ENTRANCE) {
+      return new int[] {first, last};
+    }
+    return new int[] {(first + last) / 2};
+  }
+
+  /**
+   * Adds nodes for (x,y) and (nextX,nextY), which lie on either side of a border, and the
+   * edges across it.
+   */
+  private void link(int x, int y, int nextX, int nextY, HashMap<Integer, Integer> nodeOfCell,
+      ArrayList<Integer> nodeCells, ArrayList<ArrayList<Integer>> targets,
+      ArrayList<ArrayList<Long>> costs, ArrayList<ArrayList<Integer>> nodesOfCluster) {
+    int node = node(x, y, nodeOfCell, nodeCells, targets, costs, nodesOfCluster);
+    int next = node(nextX, nextY, nodeOfCell, nodeCells, targets, costs, nodesOfCluster);
+    targets.get(node).add(next);
+    costs.get(node).add(moveCost(x, y, nextX, nextY));
+    targets.get(next).add(node);
+    costs.get(next).add(moveCost(nextX, nextY, x, y));
+  }
+
+  /**
+   * @return the node of (x,y), added if it does not exist yet
+   */
+  private int node(int x, int y, HashMap<Integer, Integer> nodeOfCell,
+      ArrayList<Integer> nodeCells, ArrayList<ArrayList<Integer>> targets,
+      ArrayList<ArrayList<Long>> costs, ArrayList<ArrayList<Integer>> nodesOfCluster) {
+    int cell = x * nColumns + y;
+    Integer node = nodeOfCell.get(cell);
+    if (node == null) {
+      node = nodeCells.size();
+      nodeOfCell.put(cell, node);
+      nodeCells.add(cell);
+      targets.add(new ArrayList<Integer>());
+      costs.add(new ArrayList<Long>());
+      nodesOfCluster.get(clusterOf(x, y)).add(node);
+    }
+    return node;
+  }
+
+  /**
+   * Nodes and edges of the abstract graph. Node i is the cell nodeCell[i].
+   */
+  static final class AbstractGraph {
+    final int[] nodeCell;
+    //Position of a node in the node list of its cluster.
+    final int[] indexInCluster;
+    final int[][] clusterNodes;
+    final int[][] edgeTarget;
+    final long[][] edgeCost;
+
+    AbstractGraph(int nodes, int clusters) {
+      nodeCell = new int[nodes];
+      indexInCluster = new int[nodes];
+      clusterNodes = new int[clusters][];
+      edgeTarget = new int[nodes][];
+      edgeCost = new long[nodes][];
+    }
+
+    int size() {
+      return nodeCell.length;
+    }
+  }
+
+  /**
+   * Abstract graph of a search and the instances made from it, marked stale when the terrain
+   * changes.
+   */
+  static final class SharedGraph implements TerrainListener {
+    volatile AbstractGraph graph;
+    volatile boolean stale;
+
+    public void cellChanged(int x, int y, int oldValue, int newValue) {
+      stale = true;
+    }
+  }
+
+  /**
+   * Dijkstra search over the cells of a single cluster, with arrays sized to one cluster.
+   */
+  private final class ClusterSearch {
+    private final long[] cost = new long[clusterSize * clusterSize];
+    //Parent links in cluster coordinates, -1 for the source.
+    private final int[] parent = new int[clusterSize * clusterSize];
+    private final IndexedMinHeap queue = new IndexedMinHeap(clusterSize * clusterSize);
+    private int x0;
+    private int y0;
+    private int height;
+    private int width;
+
+    /**
+     * Computes the cost between (sourceX,sourceY) and every cell of cluster, over paths that
+     * stay inside the cluster.
+     * @param cluster
+     * @param sourceX
+     * @param sourceY
+     * @param reverse : true for costs from every cell to the source, false for costs from the
+     * source to every cell
+     */
+    void run(int cluster, int sourceX, int sourceY, boolean reverse) {
+      x0 = (cluster / clusterColumns) * clusterSize;
+      y0 = (cluster % clusterColumns) * clusterSize;
+      height = Math.min(clusterSize, nRows - x0);
+      width = Math.min(clusterSize, nColumns - y0);
+      Arrays.fill(cost, 0, height * width, UNREACHABLE);
+      int source = (sourceX - x0) * width + sourceY - y0;
+      cost[source] = 0;
+      parent[source] = -1;
+      queue.insert(source, 0);
+      while (queue.isEmpty() == false) {
+        int local = queue.poll();
+        if (metrics != null) {
+          metrics.expanded++;
+        }
+        int x = x0 + local / width;
+        int y = y0 + local % width;
+        for (int d = 0; d < dx.length; d++) {
+          int nextX = reverse ? x - dx[d] : x + dx[d];
+          int nextY = reverse ? y - dy[d] : y + dy[d];
+          if (nextX < x0 || nextY < y0 || nextX >= x0 + height || nextY >= y0 + width) {
+            continue;
+          }
+          //A reverse search follows moves from (nextX,nextY) to (x,y).
+          long childCost = reverse ? moveFeasibleCost(nextX, nextY, x, y)
+              : moveFeasibleCost(x, y, nextX, nextY);
+          if (childCost == UNREACHABLE) {
+            continue;
+          }
+          childCost += cost[local];
+          int child = (nextX - x0) * width + nextY - y0;
+          if (childCost < cost[child]) {
+            cost[child] = childCost;
+            parent[child] = local;
+            queue.insertOrDecrease(child, childCost);
+          }
+        }
+      }
+    }
+
+    /**
+     * @return the cost of the move, or UNREACHABLE if the agent cannot make it
+     */
+    private long moveFeasibleCost(int x, int y, int nextX, int nextY) {
+      if (env.canMove(x, y, nextX, nextY) == false) {
+        return UNREACHABLE;
+      }
+      return moveCost(x, y, nextX, nextY);
+    }
+
+    /**
+     * @param cell : A cell of the last cluster searched, x * NCOLUMNS + y
+     * @return the cost found for cell by the last run
+     */
+    long cost(int cell) {
+      int x = cell / nColumns;
+      int y = cell % nColumns;
+      return cost[(x - x0) * width + y - y0];
+    }
+
+    /**
+     * Appends the path from the source of the last forward run to cell, without the source.
+     * @param cell
+     * @param path
+     */
+    void appendPath(int cell, ArrayList<State> path) {
+      int x = cell / nColumns;
+      int y = cell % nColumns;
+      int size = path.size();
+      for (int local = (x - x0) * width + y - y0; parent[local] != -1; local = parent[local]) {
+        path.add(new State(x0 + local / width, y0 + local % width));
+      }
+      Collections.reverse(path.subList(size, path.size()));
+    }
+  }
+}
@@ -0,0 +1,395 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import environment.TerrainListener;
+import operators.Directions;
+import operators.Operator;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * IncrementalSearch implements Lifelong Planning A* (LPA*) over primitive arrays laid out as in
+ * GridAStarSearch. It listens to the terrain of the environment, and when the same start and
+ * goal states are searched for again after cells have changed, it repairs the previous
+ * solution instead of searching from scratch: only the cells whose cost to reach changed, and
+ * the ones around them, are expanded again.
+ *
+ * Besides the cost to reach a cell, g, every cell keeps rhs, the least cost to reach it through
+ * one of its predecessors. A cell whose g and rhs differ is inconsistent and is queued, ordered
+ * by min(g, rhs) + heuristic. When a cell changes, only the rhs of the cell and its neighbors
+ * can change, so only those are requeued. Searching for different start or goal states starts
+ * from scratch and expands the same cells as A*.
+ *
+ * The first search costs about as much as A*, with 2 longs per cell for g and rhs. reset does
+ * not discard the previous solution, as SearchContext resets a search before every call. The
+ * heuristic must be consistent for the paths to be optimal. Operators must be unit moves.
+ */
+public class IncrementalSearch implements Search, TerrainListener {
+  //Cost of a cell that has not been reached.
+  static final long UNREACHED = Long.MAX_VALUE;
+
+  Environment env;
+  private final int nRows;
+  private final int nColumns;
+  ArrayList<Operator> operators;
+  //Directions of the operators as a bitmask over Directions.
+  private final int operatorMask;
+  //The cost function f(n)
+  private final CostFunction[] costFunctions;
+  //The hueristic g(n)
+  private final CostFunction[] heuristicCostFunctions;
+
+  //Cost to reach a cell, as of its last expansion
+  private final long[] g;
+  //Least cost to reach a cell through one of its predecessors
+  private final long[] rhs;
+  //Inconsistent cells, keyed by cell and ordered by min(g, rhs) + heuristic.
+  private final IndexedMinHeap queue;
+  //Cells that changed since the last search.
+  private final BitSet changed = new BitSet();
+
+  //Cells of the previous query, -1 if there is none.
+  private int start = -1;
+  private int goal = -1;
+  private int goalX, goalY;
+
+  private SearchListener listener;
+  private SearchMetrics metrics;
+  private boolean quiet;
+
+  /**
+   * @param env : The environment in which a goal needs to be searched. The search listens to
+   * its terrain until it is closed.
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * Must be unit moves.
+   * @param costFunctions : Cost functions that define f(n)
+   * @param heuristicCostFunctions : Cost functions that define g(n)
+   */
+  public IncrementalSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions) {
+    this.env = env;
+    this.operators = operators;
+    this.nRows = env.getNRows();
+    this.nColumns = env.getNColumns();
+    this.costFunctions = costFunctions.toArray(new CostFunction[0]);
+    this.heuristicCostFunctions = heuristicCostFunctions.toArray(new CostFunction[0]);
+    int mask = 0;
+    for (Operator operator : operators) {
+      int bit = Directions.bitOf(operator);
+      if (bit == 0) {
+        throw new IllegalArgumentException("Incremental search needs unit moves");
+      }
+      mask |= bit;
+    }
+    operatorMask = mask;
+
+    int nCells = nRows * nColumns;
+    g = new long[nCells];
+    rhs = new long[nCells];
+    queue = new IndexedMinHeap(nCells);
+    env.addTerrainListener(this);
+    reset();
+  }
+
+  /**
+   * Clears the metrics. The previous solution is kept, so that it can be repaired.
+   */
+  public void reset() {
+    if (metrics != null) {
+      metrics.clear();
+    }
+  }
+
+  public Search newInstance() {
+    return new IncrementalSearch(env, operators,
+        new ArrayList<CostFunction>(Arrays.asList(costFunctions)),
+        new ArrayList<CostFunction>(Arrays.asList(heuristicCostFunctions)));
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+
+  /**
+   * Stops listening to the terrain.
+   */
+  @Override
+  public void close() {
+    env.removeTerrainListener(this);
+  }
+
+  /**
+   * Remembers that (x,y) changed, so that the next search repairs around it.
+   */
+  public void cellChanged(int x, int y, int oldValue, int newValue) {
+    if (goal >= 0) {
+      changed.set(x * nColumns + y);
+    }
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return A sequence of states that correspond to the path from
+   * startState to endState
+   */
+  public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    int nextStart = startState.getX() * nColumns + startState.getY();
+    int nextGoal = goalState.getX() * nColumns + goalState.getY();
+    if (nextStart != start || nextGoal != goal) {
+      initialize(nextStart, goalState);
+    } else {
+      repair();
+    }
+    computeShortestPath();
+
+    boolean solutionFound = g[goal] != UNREACHED;
+    if (quiet == false) {
+      System.out.println(solutionFound ? g[goal] : 0);
+    }
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = extractSolution(solutionFound);
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, solutionFound ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Discards the previous solution and queues startState for a search towards goalState.
+   * @param nextStart
+   * @param goalState
+   */
+  private void initialize(int nextStart, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    Arrays.fill(g, UNREACHED);
+    Arrays.fill(rhs, UNREACHED);
+    queue.clear();
+    changed.clear();
+    start = nextStart;
+    goalX = goalState.getX();
+    goalY = goalState.getY();
+    goal = goalX * nColumns + goalY;
+    rhs[start] = 0;
+    queue.insert(start, key(start));
+    if (metrics != null) {
+      metrics.resetNanos += System.nanoTime() - begin;
+    }
+  }
+
+  /**
+   * Updates the cells whose incoming moves changed with the terrain: every changed cell and its
+   * neighbors. The heuristic may read the terrain too, so the queue is reordered.
+   */
+  private void repair() {
+    if (changed.isEmpty()) {
+      return;
+    }
+    for (int cell = changed.nextSetBit(0); cell >= 0; cell = changed.nextSetBit(cell + 1)) {
+      int x = cell / nColumns;
+      int y = cell - x * nColumns;
+      for (int i = Math.max(0, x - 1); i <= Math.min(nRows - 1, x + 1); i++) {
+        for (int j = Math.max(0, y - 1); j <= Math.min(nColumns - 1, y + 1); j++) {
+          updateCell(i * nColumns + j);
+        }
+      }
+    }
+    changed.clear();
+    int[] cells = new int[queue.size()];
+    for (int slot = 0; slot < cells.length; slot++) {
+      cells[slot] = queue.keyAt(slot);
+    }
+    queue.clear();
+    for (int cell : cells) {
+      queue.insert(cell, key(cell));
+    }
+  }
+
+  /**
+   * Expands inconsistent cells until the goal is consistent and no queued cell can lead to a
+   * cheaper path to it, or the queue runs out. Cells queued with the same key as the goal are
+   * expanded too, which stands in for the tie breaking on min(g, rhs) of LPA*.
+   */
+  private void computeShortestPath() {
+    while (queue.isEmpty() == false
+        && (queue.peekPriority() <= key(goal) || g[goal] != rhs[goal])) {
+      int node = queue.poll();
+      int x = node / nColumns;
+      int y = node - x * nColumns;
+      if (metrics != null) {
+        metrics.expanded++;
+      }
+      int mask = env.getMoveMask(x, y) & operatorMask;
+      if (g[node] > rhs[node]) {
+        //Cheaper than before. Successors may now be reached more cheaply through node.
+        g[node] = rhs[node];
+        while (mask != 0) {
+          int d = Integer.numberOfTrailingZeros(mask);
+          mask &= mask - 1;
+          int nextX = x + Directions.DX[d];
+          int nextY = y + Directions.DY[d];
+          int child = nextX * nColumns + nextY;
+          long childCost = g[node] + moveCost(x, y, nextX, nextY);
+          if (metrics != null) {
+            metrics.generated++;
+          }
+          if (child != start && childCost < rhs[child]) {
+            rhs[child] = childCost;
+            enqueue(child);
+          }
+        }
+      } else {
+        //Dearer than before. node and the successors that went through it are recomputed.
+        g[node] = UNREACHED;
+        updateCell(node);
+        while (mask != 0) {
+          int d = Integer.numberOfTrailingZeros(mask);
+          mask &= mask - 1;
+          if (metrics != null) {
+            metrics.generated++;
+          }
+          updateCell((x + Directions.DX[d]) * nColumns + y + Directions.DY[d]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Recomputes rhs of cell from its predecessors and queues cell if it is inconsistent.
+   * @param cell
+   */
+  private void updateCell(int cell) {
+    if (cell != start) {
+      rhs[cell] = UNREACHED;
+      int x = cell / nColumns;
+      int y = cell - x * nColumns;
+      for (int d = 0; d < Directions.COUNT; d++) {
+        if ((operatorMask & (1 << d)) == 0) {
+          continue;
+        }
+        int previousX = x - Directions.DX[d];
+        int previousY = y - Directions.DY[d];
+        if (env.isValid(previousX, previousY) == false
+            || (env.getMoveMask(previousX, previousY) & (1 << d)) == 0) {
+          continue;
+        }
+        long previousCost = g[previousX * nColumns + previousY];
+        if (previousCost != UNREACHED) {
+          rhs[cell] = Math.min(rhs[cell], previousCost + moveCost(previousX, previousY, x, y));
+        }
+      }
+    }
+    enqueue(cell);
+  }
+
+  /**
+   * Queues cell with its current key if it is inconsistent, and takes it off the queue if not.
+   * @param cell
+   */
+  private void enqueue(int cell) {
+    boolean queued = queue.contains(cell);
+    if (g[cell] == rhs[cell]) {
+      if (queued) {
+        queue.remove(cell);
+      }
+      return;
+    }
+    if (queued) {
+      if (metrics != null) {
+        metrics.decreasedKeys++;
+      }
+      queue.remove(cell);
+    }
+    queue.insert(cell, key(cell));
+    if (metrics != null) {
+      metrics.opened(queue.size());
+    }
+  }
+
+  /**
+   * @param cell
+   * @return the queue priority of cell, min(g, rhs) + heuristic, or UNREACHED if neither is
+   * known
+   */
+  private long key(int cell) {
+    long cost = Math.min(g[cell], rhs[cell]);
+    if (cost == UNREACHED) {
+      return UNREACHED;
+    }
+    int x = cell / nColumns;
+    int y = cell - x * nColumns;
+    long heuristicCost = 0;
+    for (CostFunction hcf : heuristicCostFunctions) {
+      heuristicCost += hcf.cost(x, y, goalX, goalY);
+    }
+    return cost + heuristicCost;
+  }
+
+  /**
+   * @return the cost of the move from (x,y) to (nextX,nextY)
+   */
+  private long moveCost(int x, int y, int nextX, int nextY) {
+    long cost = 0;
+    for (CostFunction cf : costFunctions) {
+      cost += cf.cost(x, y, nextX, nextY);
+    }
+    return cost;
+  }
+
+  /**
+   * Walks back from the goal, each time to the predecessor that the cost of the cell was
+   * reached through.
+   * @param solutionFound
+   * @return A sequence of states that correspond to the path from the start state to the goal
+   */
+  private ArrayList<State> extractSolution(boolean solutionFound) {
+    ArrayList<State> solution = new ArrayList<State>();
+    if (solutionFound == false) {
+      return solution;
+    }
+    int cell = goal;
+    solution.add(new State(goalX, goalY));
+    while (cell != start) {
+      int x = cell / nColumns;
+      int y = cell - x * nColumns;
+      int best = -1;
+      long bestCost = UNREACHED;
+      for (int d = 0; d < Directions.COUNT; d++) {
+        if ((operatorMask & (1 << d)) == 0) {
+          continue;
+        }
+        int previousX = x - Directions.DX[d];
+        int previousY = y - Directions.DY[d];
+        if (env.isValid(previousX, previousY) == false
+            || (env.getMoveMask(previousX, previousY) & (1 << d)) == 0) {
+          continue;
+        }
+        int previous = previousX * nColumns + previousY;
+        if (g[previous] != UNREACHED
+            && g[previous] + moveCost(previousX, previousY, x, y) < bestCost) {
+          best = previous;
+          bestCost = g[previous] + moveCost(previousX, previousY, x, y);
+        }
+      }
+      cell = best;
+      solution.add(new State(cell / nColumns, cell % nColumns));
+    }
+
+    //solution contains cells from goal to start. Hence, reverse before returning.
+    Collections.reverse(solution);
+    return solution;
+  }
+
+}
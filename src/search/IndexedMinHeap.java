@@ -0,0 +1,233 @@
+package search;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * IndexedMinHeap is a binary min-heap over integer keys in [0, capacity), typically cell indices
+ * x * NCOLUMNS + y. Each key is present at most once. Priorities and heap positions are held in
+ * primitive arrays, so insert, poll and decreaseKey are O(log n) and contains is O(1).
+ * By default a key stays below keys of equal priority. A heap built with latestFirst set breaks
+ * ties the way java.util.PriorityQueue did with the UCS and A* comparators, which ranked a node
+ * ahead of nodes of equal priority: a key inserted or lowered rises above them, and decreaseKey
+ * removes and inserts the key again as queue.remove + queue.offer did. UCSSearch and AStarSearch
+ * use it so that their paths among equal cost ones stay the same.
+ */
+public class IndexedMinHeap implements CellQueue {
+  //Heap slot -> key
+  private final int[] heap;
+  //Key -> heap slot, -1 if the key is not in the heap
+  private final int[] position;
+  //Key -> priority
+  private final long[] priority;
+  //Keys rise above keys of equal priority
+  private final boolean latestFirst;
+  private int size;
+
+  /**
+   * @param capacity : Keys must lie in [0, capacity)
+   */
+  public IndexedMinHeap(int capacity) {
+    this(capacity, false);
+  }
+
+  /**
+   * @param capacity : Keys must lie in [0, capacity)
+   * @param latestFirst : Break ties as java.util.PriorityQueue did for the UCS and A* comparators
+   */
+  public IndexedMinHeap(int capacity, boolean latestFirst) {
+    this.latestFirst = latestFirst;
+    heap = new int[capacity];
+    position = new int[capacity];
+    priority = new long[capacity];
+    Arrays.fill(position, -1);
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param key
+   * @return true if key is currently in the heap
+   */
+  public boolean contains(int key) {
+    return position[key] >= 0;
+  }
+
+  /**
+   * @param key
+   * @return priority of key. Only meaningful while key is in the heap.
+   */
+  public long priorityOf(int key) {
+    return priority[key];
+  }
+
+  /**
+   * Keys are stored in heap order in slots [0, size()).
+   * @param slot
+   * @return key held in slot
+   */
+  public int keyAt(int slot) {
+    return heap[slot];
+  }
+
+  /**
+   * @return the key with the least priority, without removing it
+   */
+  public int peek() {
+    checkNotEmpty();
+    return heap[0];
+  }
+
+  /**
+   * @return the least priority in the heap
+   */
+  public long peekPriority() {
+    checkNotEmpty();
+    return priority[heap[0]];
+  }
+
+  /**
+   * Adds key to the heap.
+   * @param key : A key that is not in the heap
+   * @param keyPriority
+   */
+  public void insert(int key, long keyPriority) {
+    priority[key] = keyPriority;
+    heap[size] = key;
+    position[key] = size;
+    siftUp(size++);
+  }
+
+  /**
+   * Lowers the priority of a key already in the heap.
+   * @param key
+   * @param keyPriority : New priority, not greater than the current one
+   */
+  public void decreaseKey(int key, long keyPriority) {
+    if (latestFirst) {
+      remove(key);
+      insert(key, keyPriority);
+      return;
+    }
+    priority[key] = keyPriority;
+    siftUp(position[key]);
+  }
+
+  /**
+   * Inserts key, or lowers its priority if it is already present with a higher priority.
+   * @param key
+   * @param keyPriority
+   */
+  public void insertOrDecrease(int key, long keyPriority) {
+    if (position[key] < 0) {
+      insert(key, keyPriority);
+    } else if (keyPriority < priority[key]) {
+      decreaseKey(key, keyPriority);
+    }
+  }
+
+  /**
+   * Removes and returns the key with the least priority.
+   * @return key
+   */
+  public int poll() {
+    checkNotEmpty();
+    int top = heap[0];
+    position[top] = -1;
+    size--;
+    if (size > 0) {
+      int last = heap[size];
+      heap[0] = last;
+      position[last] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  /**
+   * Removes key from the heap if present.
+   * @param key
+   */
+  public void remove(int key) {
+    int slot = position[key];
+    if (slot < 0) {
+      return;
+    }
+    position[key] = -1;
+    size--;
+    if (slot < size) {
+      int last = heap[size];
+      heap[slot] = last;
+      position[last] = slot;
+      siftDown(slot);
+      if (heap[slot] == last) {
+        siftUp(slot);
+      }
+    }
+  }
+
+  /**
+   * Empties the heap. Runs in time proportional to the number of keys present.
+   */
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      position[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  private void siftUp(int slot) {
+    int key = heap[slot];
+    long keyPriority = priority[key];
+    while (slot > 0) {
+      int parentSlot = (slot - 1) >>> 1;
+      int parentKey = heap[parentSlot];
+      if (priority[parentKey] < keyPriority
+          || (priority[parentKey] == keyPriority && latestFirst == false)) {
+        break;
+      }
+      heap[slot] = parentKey;
+      position[parentKey] = slot;
+      slot = parentSlot;
+    }
+    heap[slot] = key;
+    position[key] = slot;
+  }
+
+  private void siftDown(int slot) {
+    int key = heap[slot];
+    long keyPriority = priority[key];
+    while (true) {
+      int child = 2 * slot + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && priority[heap[child + 1]] < priority[heap[child]]) {
+        child++;
+      }
+      int childKey = heap[child];
+      if (keyPriority <= priority[childKey]) {
+        break;
+      }
+      heap[slot] = childKey;
+      position[childKey] = slot;
+      slot = child;
+    }
+    heap[slot] = key;
+    position[key] = slot;
+  }
+
+  private void checkNotEmpty() {
+    if (size == 0) {
+      throw new NoSuchElementException("Heap is empty");
+    }
+  }
+}
@@ -0,0 +1,515 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import environment.TerrainListener;
+import operators.Directions;
+import operators.Operator;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * JumpPointSearch implements A* with jump point search over primitive arrays laid out as in
+ * GridAStarSearch.
+ *
+ * A cell is plain if it and all of its neighbors inside the terrain are flat (value 0). Moves
+ * between flat cells only cost the move itself, so around a plain cell the terrain is an open
+ * 8-connected grid, and the usual jump point pruning applies: a plain cell reached in a
+ * straight direction only continues straight, and one reached diagonally continues diagonally
+ * and along the two straight components of the diagonal. Instead of queueing every cell on
+ * the way, a jump walks in one direction until it reaches the goal or a cell that is not plain,
+ * which is queued as a jump point. Cells that are not plain, and the start, are expanded to
+ * all their neighbors as in A*. Paths are interpolated between jump points when extracted.
+ * Straight jumps take constant time: the number of steps from every cell to the next cell that
+ * is not plain is precomputed for the 4 straight directions, at 16 bytes per cell. When a cell
+ * of the terrain changes, the tables are updated along the rows and columns through it.
+ *
+ * The cost functions must charge nothing but the move itself between flat cells, as
+ * MoveCostFunction, SteepnessCostFunction and MuddinessCostFunction do.
+ */
+public class JumpPointSearch implements Search {
+  //Cell status values
+  static final byte UNSEEN = 0;
+  static final byte OPEN = 1;
+  static final byte CLOSED = 2;
+  //Arrival direction of a cell that is expanded to all its neighbors.
+  static final byte ANY_DIRECTION = -1;
+
+  Environment env;
+  private final int nRows;
+  private final int nColumns;
+  ArrayList<Operator> operators;
+  //The cost function f(n)
+  private final CostFunction[] costFunctions;
+  //The hueristic g(n)
+  private final CostFunction[] heuristicCostFunctions;
+  //Whether a cell is plain. Shared by all instances over the same environment.
+  private final boolean[] plain;
+  //For straight direction 2 * k, runs[k][cell] is the number of steps from cell to the next
+  //cell that is not plain, or 0 if the walk leaves the terrain first. Shared like plain.
+  private final int[][] runs;
+
+  //Cost to reach a cell
+  private final long[] cost;
+  //Parent jump point, -1 for the start cell
+  private final int[] parent;
+  //Direction in which a cell was reached from its parent, as an index into Directions
+  private final byte[] direction;
+  //Open/closed status of a cell
+  private final byte[] status;
+  //The running queue, keyed by cell and ordered by cost + heuristic.
+  private final IndexedMinHeap queue;
+  //Keeps plain and runs up to date. Only the search that built the tables has one.
+  private TerrainListener tablesListener;
+
+  //The query being searched
+  private int goal, goalX, goalY;
+
+  private SearchListener listener;
+  private SearchMetrics metrics;
+  private boolean quiet;
+
+  /**
+   * @param env : The environment in which a goal needs to be searched.
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * Must be the 8 unit moves.
+   * @param costFunctions : Cost functions that define f(n)
+   * @param heuristicCostFunctions : Cost functions that define g(n)
+   */
+  public JumpPointSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions) {
+    this(env, operators, costFunctions, heuristicCostFunctions, plainCells(env), null);
+    int mask = 0;
+    for (Operator operator : operators) {
+      mask |= Directions.bitOf(operator);
+    }
+    if (mask != (1 << Directions.COUNT) - 1) {
+      throw new IllegalArgumentException("Jump point search needs the 8 unit moves");
+    }
+    //The tables follow changes to the terrain. Instances made by newInstance share them.
+    tablesListener = new TerrainListener() {
+      public void cellChanged(int x, int y, int oldValue, int newValue) {
+        updateTables(JumpPointSearch.this.env, plain, runs, x, y);
+      }
+    };
+    env.addTerrainListener(tablesListener);
+  }
+
+  private JumpPointSearch(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, ArrayList<CostFunction> heuristicCostFunctions,
+      boolean[] plain, int[][] runs) {
+    this.env = env;
+    this.operators = operators;
+    this.nRows = env.getNRows();
+    this.nColumns = env.getNColumns();
+    this.costFunctions = costFunctions.toArray(new CostFunction[0]);
+    this.heuristicCostFunctions = heuristicCostFunctions.toArray(new CostFunction[0]);
+    this.plain = plain;
+    this.runs = runs != null ? runs : straightRuns(plain, nRows, nColumns);
+
+    int nCells = nRows * nColumns;
+    cost = new long[nCells];
+    parent = new int[nCells];
+    direction = new byte[nCells];
+    status = new byte[nCells];
+    queue = new IndexedMinHeap(nCells);
+    reset();
+  }
+
+  /**
+   * @param env
+   * @return whether each cell of env is plain, indexed by x * NCOLUMNS + y
+   */
+  static boolean[] plainCells(Environment env) {
+    int nRows = env.getNRows();
+    int nColumns = env.getNColumns();
+    boolean[] plain = new boolean[nRows * nColumns];
+    for (int x = 0; x < nRows; x++) {
+      for (int y = 0; y < nColumns; y++) {
+        plain[x * nColumns + y] = isPlain(env, x, y);
+      }
+    }
+    return plain;
+  }
+
+  /**
+   * @param env
+   * @param x
+   * @param y
+   * @return true if (x,y) and all its neighbors in the terrain are flat
+   */
+  private static boolean isPlain(Environment env, int x, int y) {
+    for (int i = Math.max(0, x - 1); i <= Math.min(env.getNRows() - 1, x + 1); i++) {
+      for (int j = Math.max(0, y - 1); j <= Math.min(env.getNColumns() - 1, y + 1); j++) {
+        if (env.at(i, j) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param plain
+   * @param nRows
+   * @param nColumns
+   * @return the steps from each cell to the next cell that is not plain, per straight direction
+   */
+  static int[][] straightRuns(boolean[] plain, int nRows, int nColumns) {
+    int[][] runs = new int[Directions.COUNT / 2][plain.length];
+    for (int k = 0; k < runs.length; k++) {
+      int stepX = Directions.DX[2 * k];
+      int stepY = Directions.DY[2 * k];
+      //Visit the cell ahead of a cell before the cell itself.
+      for (int i = 0; i < nRows; i++) {
+        int x = stepX > 0 ? nRows - 1 - i : i;
+        for (int j = 0; j < nColumns; j++) {
+          int y = stepY > 0 ? nColumns - 1 - j : j;
+          runs[k][x * nColumns + y] = straightRun(runs[k], plain, nRows, nColumns, x, y, k);
+        }
+      }
+    }
+    return runs;
+  }
+
+  /**
+   * @param run : Runs in straight direction 2 * k, already computed for the cell ahead of (x,y)
+   * @param plain
+   * @param nRows
+   * @param nColumns
+   * @param x
+   * @param y
+   * @param k
+   * @return the steps from (x,y) to the next cell that is not plain in straight direction 2 * k
+   */
+  private static int straightRun(int[] run, boolean[] plain, int nRows, int nColumns, int x,
+      int y, int k) {
+    int nextX = x + Directions.DX[2 * k];
+    int nextY = y + Directions.DY[2 * k];
+    if (nextX < 0 || nextX >= nRows || nextY < 0 || nextY >= nColumns) {
+      return 0;
+    }
+    int next = nextX * nColumns + nextY;
+    if (plain[next] == false) {
+      return 1;
+    }
+    return run[next] > 0 ? run[next] + 1 : 0;
+  }
+
+  /**
+   * Updates the tables after the terrain of (x,y) changed. Only the 3x3 block around (x,y) can
+   * change plain status, so only the runs along the rows of the block, for East and West, and
+   * along its columns, for North and South, are recomputed.
+   * @param env
+   * @param plain
+   * @param runs
+   * @param x
+   * @param y
+   */
+  static void updateTables(Environment env, boolean[] plain, int[][] runs, int x, int y) {
+    int nRows = env.getNRows();
+    int nColumns = env.getNColumns();
+    int minX = Math.max(0, x - 1);
+    int maxX = Math.min(nRows - 1, x + 1);
+    int minY = Math.max(0, y - 1);
+    int maxY = Math.min(nColumns - 1, y + 1);
+    boolean changed = false;
+    for (int i = minX; i <= maxX; i++) {
+      for (int j = minY; j <= maxY; j++) {
+        boolean flat = isPlain(env, i, j);
+        changed |= plain[i * nColumns + j] != flat;
+        plain[i * nColumns + j] = flat;
+      }
+    }
+    if (changed == false) {
+      return;
+    }
+    for (int k = 0; k < runs.length; k++) {
+      int stepX = Directions.DX[2 * k];
+      int stepY = Directions.DY[2 * k];
+      if (stepX == 0) {
+        for (int i = minX; i <= maxX; i++) {
+          for (int j = 0; j < nColumns; j++) {
+            int col = stepY > 0 ? nColumns - 1 - j : j;
+            runs[k][i * nColumns + col] = straightRun(runs[k], plain, nRows, nColumns, i, col, k);
+          }
+        }
+      } else {
+        for (int j = minY; j <= maxY; j++) {
+          for (int i = 0; i < nRows; i++) {
+            int row = stepX > 0 ? nRows - 1 - i : i;
+            runs[k][row * nColumns + j] = straightRun(runs[k], plain, nRows, nColumns, row, j, k);
+          }
+        }
+      }
+    }
+  }
+
+  public void reset() {
+    long begin = SearchMetrics.clock(metrics);
+    Arrays.fill(status, UNSEEN);
+    queue.clear();
+    if (metrics != null) {
+      metrics.clear();
+      metrics.resetNanos = System.nanoTime() - begin;
+    }
+  }
+
+  public Search newInstance() {
+    return new JumpPointSearch(env, operators,
+        new ArrayList<CostFunction>(Arrays.asList(costFunctions)),
+        new ArrayList<CostFunction>(Arrays.asList(heuristicCostFunctions)), plain, runs);
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+
+  /**
+   * Closing the search that built the tables stops them following the terrain, so the
+   * instances made from it by newInstance must not be used after it either.
+   */
+  @Override
+  public void close() {
+    if (tablesListener != null) {
+      env.removeTerrainListener(tablesListener);
+      tablesListener = null;
+    }
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return A sequence of states that correspond to the path from
+   * startState to endState
+   */
+  public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    goalX = goalState.getX();
+    goalY = goalState.getY();
+    goal = goalX * nColumns + goalY;
+    int start = startState.getX() * nColumns + startState.getY();
+
+    cost[start] = 0;
+    parent[start] = -1;
+    direction[start] = ANY_DIRECTION;
+    status[start] = OPEN;
+    queue.insert(start, heuristic(startState.getX(), startState.getY()));
+
+    boolean solutionFound = false;
+    while (queue.isEmpty() == false) {
+      int node = queue.poll();
+      //If goal found, break
+      if (node == goal) {
+        solutionFound = true;
+        break;
+      }
+      status[node] = CLOSED;
+      expand(node);
+    }
+
+    long solutionCost = solutionFound ? cost[goal] : 0;
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = extractSolution(solutionFound ? goal : -1);
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, solutionFound ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Expands node. A plain cell jumps in the directions its arrival direction leaves open, any
+   * other cell moves to each feasible neighbor.
+   * @param node
+   */
+  private void expand(int node) {
+    int x = node / nColumns;
+    int y = node - x * nColumns;
+    if (metrics != null) {
+      metrics.expanded++;
+    }
+    if (plain[node] == false) {
+      for (int d = 0; d < Directions.COUNT; d++) {
+        int nextX = x + Directions.DX[d];
+        int nextY = y + Directions.DY[d];
+        //Evaluate a cell only if it is feasible
+        if (env.isValid(nextX, nextY) && env.canMove(x, y, nextX, nextY)) {
+          relax(node, x, y, nextX, nextY, 1, d);
+        }
+      }
+      return;
+    }
+    int arrival = direction[node];
+    if (arrival == ANY_DIRECTION) {
+      for (int d = 0; d < Directions.COUNT; d++) {
+        jump(node, x, y, d);
+      }
+    } else if (Directions.DX[arrival] == 0 || Directions.DY[arrival] == 0) {
+      //Straight: only the cell ahead is not reached at least as cheaply around node.
+      jump(node, x, y, arrival);
+    } else {
+      //Diagonal: the cell ahead and the cells ahead along each component.
+      jump(node, x, y, arrival);
+      jump(node, x, y, Directions.indexOf(Directions.DX[arrival], 0));
+      jump(node, x, y, Directions.indexOf(0, Directions.DY[arrival]));
+    }
+  }
+
+  /**
+   * Jumps from the plain cell node at (x,y) in direction d, and queues the jump point found.
+   */
+  private void jump(int node, int x, int y, int d) {
+    int steps = jumpLength(x, y, d);
+    if (steps > 0) {
+      relax(node, x, y, x + steps * Directions.DX[d], y + steps * Directions.DY[d], steps, d);
+    }
+  }
+
+  /**
+   * Walks from the plain cell (x,y) in direction d over plain cells. A cell is a jump point if
+   * it is the goal or not plain. A cell reached diagonally is also a jump point if a straight
+   * jump along either component of the diagonal finds one.
+   * @return the number of steps to the jump point, or 0 if the walk leaves the terrain first
+   */
+  private int jumpLength(int x, int y, int d) {
+    int stepX = Directions.DX[d];
+    int stepY = Directions.DY[d];
+    if (stepX == 0 || stepY == 0) {
+      return straightJumpLength(x, y, d);
+    }
+    int straightX = Directions.indexOf(stepX, 0);
+    int straightY = Directions.indexOf(0, stepY);
+    int steps = 0;
+    while (true) {
+      x += stepX;
+      y += stepY;
+      steps++;
+      if (env.isValid(x, y) == false) {
+        return 0;
+      }
+      int cell = x * nColumns + y;
+      if (cell == goal || plain[cell] == false) {
+        return steps;
+      }
+      if (straightJumpLength(x, y, straightX) > 0 || straightJumpLength(x, y, straightY) > 0) {
+        return steps;
+      }
+    }
+  }
+
+  /**
+   * jumpLength for a straight direction d, read off the precomputed runs.
+   */
+  private int straightJumpLength(int x, int y, int d) {
+    int steps = runs[d / 2][x * nColumns + y];
+    //Steps to the goal, if it lies ahead on the same row or column.
+    int ahead = 0;
+    if (Directions.DX[d] == 0 && goalX == x) {
+      ahead = (goalY - y) * Directions.DY[d];
+    } else if (Directions.DY[d] == 0 && goalY == y) {
+      ahead = (goalX - x) * Directions.DX[d];
+    }
+    if (ahead > 0 && (steps == 0 || ahead < steps)) {
+      return ahead;
+    }
+    return steps;
+  }
+
+  /**
+   * Updates the cost of (nextX,nextY) if it is cheaper to reach through node at (x,y) by moving
+   * steps times in direction d. Every step after the first is between flat cells and costs the
+   * same as the first.
+   */
+  private void relax(int node, int x, int y, int nextX, int nextY, int steps, int d) {
+    int child = nextX * nColumns + nextY;
+    long stepCost = 0;
+    //Calculate costs incurred to reach this cell.
+    for (CostFunction cf : costFunctions) {
+      stepCost += cf.cost(x, y, x + Directions.DX[d], y + Directions.DY[d]);
+    }
+    long childCost = cost[node] + steps * stepCost;
+    if (metrics != null) {
+      metrics.generated++;
+    }
+    if (status[child] == UNSEEN || childCost < cost[child]) {
+      //child unexplored till now, or found a better path to child. Hence, update.
+      //A closed child is reopened.
+      if (metrics != null) {
+        record(status[child]);
+      }
+      cost[child] = childCost;
+      parent[child] = node;
+      direction[child] = (byte) d;
+      status[child] = OPEN;
+      queue.insertOrDecrease(child, childCost + heuristic(nextX, nextY));
+      if (metrics != null) {
+        metrics.opened(queue.size());
+      }
+    }
+  }
+
+  /**
+   * @param goal : The goal cell, or -1 if the goal was not reached
+   * @return A sequence of states that correspond to the path from the start state to goal,
+   * including the cells between jump points
+   */
+  private ArrayList<State> extractSolution(int goal) {
+    ArrayList<State> solution = new ArrayList<State>();
+    for (int cell = goal; cell != -1; cell = parent[cell]) {
+      int x = cell / nColumns;
+      int y = cell % nColumns;
+      solution.add(new State(x, y));
+      if (parent[cell] == -1) {
+        break;
+      }
+      //Walk back to the parent jump point, which lies in a straight or diagonal line.
+      int parentX = parent[cell] / nColumns;
+      int parentY = parent[cell] % nColumns;
+      int stepX = Integer.signum(parentX - x);
+      int stepY = Integer.signum(parentY - y);
+      for (x += stepX, y += stepY; x != parentX || y != parentY; x += stepX, y += stepY) {
+        solution.add(new State(x, y));
+      }
+    }
+
+    //solution contains cells from goal to start. Hence, reverse before returning.
+    Collections.reverse(solution);
+    return solution;
+  }
+
+  /**
+   * @return Costs that will incur according to heuristics from (x,y) to the goal
+   */
+  private long heuristic(int x, int y) {
+    long heuristicCost = 0;
+    for (CostFunction hcf : heuristicCostFunctions) {
+      heuristicCost += hcf.cost(x, y, goalX, goalY);
+    }
+    return heuristicCost;
+  }
+
+  /**
+   * Counts an update of a cell that had status previous.
+   * @param previous
+   */
+  private void record(byte previous) {
+    if (previous == OPEN) {
+      metrics.decreasedKeys++;
+    } else if (previous == CLOSED) {
+      metrics.reopened++;
+    }
+  }
+
+}
@@ -0,0 +1,21 @@
+package search;
+
+import java.util.ArrayList;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * MultiGoalSearch enables implementors to find paths from one startState to many goal states
+ * in a single search, instead of one full search per goal.
+ */
+public interface MultiGoalSearch extends Search {
+
+  /**
+   * @param startState
+   * @param goalStates
+   * @return one sequence of states per goal state, in the order of goalStates. A sequence is
+   * empty if its goal state is unreachable.
+   */
+  ArrayList<ArrayList<State>> search(State startState, ArrayList<State> goalStates);
+}
@@ -6,7 +6,10 @@ import state.State;
 
 /**
  * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
- * Search enables implementors to define their own search algorithms from startState to goalState
+ * Search enables implementors to define their own search algorithms from startState to goalState.
+ * A search keeps its running state in the instance and is not thread safe. The environment,
+ * operators and cost functions it is built from are only read, so concurrent searches over the
+ * same environment each use their own instance, obtained from newInstance().
  */
 public interface Search {
 
@@ -21,4 +24,30 @@ public interface Search {
    * @return a sequence of states that represent path from startState to goalState
    */
   ArrayList<State> search(State startState, State goalState);
+
+  /**
+   * @return a new search of the same kind that shares this search's environment, operators and
+   * cost functions, with search state of its own
+   */
+  Search newInstance();
+
+  /**
+   * @param listener : Receives the metrics of every search call from now on, or null to stop
+   * collecting metrics. New instances start without a listener.
+   */
+  void setListener(SearchListener listener);
+
+  /**
+   * @param quiet : Whether to stop printing the cost of every path found to System.out, as
+   * searches do by default. New instances print.
+   */
+  void setQuiet(boolean quiet);
+
+  /**
+   * Releases what the search holds outside of itself, such as listeners on the terrain of its
+   * environment, so that it can be collected. The search must not be used afterwards. Does
+   * nothing by default.
+   */
+  default void close() {
+  }
 }
@@ -0,0 +1,22 @@
+package search;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * SearchListener receives the metrics of searches. A search only collects metrics while it has
+ * a listener, so searches without one pay nothing for instrumentation.
+ */
+public interface SearchListener {
+
+  /**
+   * Called at the end of every search call, on the thread that ran the search.
+   * @param metrics : Metrics of the search since its last reset. The search reuses this object,
+   * so copy it with SearchMetrics.add to keep it.
+   */
+  void queryFinished(SearchMetrics metrics);
+
+  /**
+   * Called by SearchContext at the end of every batch of searches.
+   * @param summary : Metrics of all searches in the batch, and the wall time of the batch
+   */
+  void batchFinished(SearchMetrics summary);
+}
@@ -0,0 +1,162 @@
+package search;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * SearchMetrics holds what a search did: how many nodes it expanded and generated, how large
+ * its open list grew, how often it lowered the cost of a queued node (decrease-key) or moved a
+ * closed node back to the open list (re-open), and the wall time of each phase.
+ * The search that owns a SearchMetrics updates it directly, and is the only one that does. Each
+ * search call ends with finish, which reports the metrics to the listener of the search.
+ */
+public class SearchMetrics {
+  //Number of search calls
+  long queries;
+  //Number of goal states searched for, and how many of them were reached
+  long goals;
+  long solved;
+  //Nodes taken off the open list and expanded
+  long expanded;
+  //Feasible successors evaluated during expansion
+  long generated;
+  //Largest size of the open list
+  long peakOpen;
+  //Queued nodes that were given a lower cost
+  long decreasedKeys;
+  //Closed nodes that were given a lower cost and queued again
+  long reopened;
+  //Wall time spent in reset, in the search loop and in extracting paths
+  long resetNanos;
+  long searchNanos;
+  long extractNanos;
+  //Wall time of a batch. Only set on summaries.
+  long wallNanos;
+
+  public long getQueries() {
+    return queries;
+  }
+
+  public long getGoals() {
+    return goals;
+  }
+
+  public long getSolved() {
+    return solved;
+  }
+
+  public long getExpanded() {
+    return expanded;
+  }
+
+  public long getGenerated() {
+    return generated;
+  }
+
+  public long getPeakOpen() {
+    return peakOpen;
+  }
+
+  public long getDecreasedKeys() {
+    return decreasedKeys;
+  }
+
+  public long getReopened() {
+    return reopened;
+  }
+
+  public long getResetNanos() {
+    return resetNanos;
+  }
+
+  public long getSearchNanos() {
+    return searchNanos;
+  }
+
+  public long getExtractNanos() {
+    return extractNanos;
+  }
+
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  public void setWallNanos(long wallNanos) {
+    this.wallNanos = wallNanos;
+  }
+
+  /**
+   * Timestamps for the phases of a search, taken only when metrics are collected.
+   * @param metrics : Metrics of the search, or null when metrics are not collected
+   * @return the current time in nanoseconds when metrics are collected, and 0 otherwise
+   */
+  public static long clock(SearchMetrics metrics) {
+    return metrics == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Completes the metrics of a search call that began at begin, and reports them.
+   * @param begin : clock at the start of the call
+   * @param extractNanos : Time spent extracting paths
+   * @param goals : Number of goal states searched for
+   * @param solved : Number of goal states reached
+   * @param listener : Receives these metrics
+   */
+  void finish(long begin, long extractNanos, int goals, int solved, SearchListener listener) {
+    queries++;
+    this.goals += goals;
+    this.solved += solved;
+    searchNanos += System.nanoTime() - begin - extractNanos;
+    this.extractNanos += extractNanos;
+    listener.queryFinished(this);
+  }
+
+  /**
+   * Records the size of the open list after a node was queued.
+   * @param openSize
+   */
+  void opened(int openSize) {
+    if (openSize > peakOpen) {
+      peakOpen = openSize;
+    }
+  }
+
+  /**
+   * Zeroes all metrics.
+   */
+  public void clear() {
+    queries = goals = solved = 0;
+    expanded = generated = peakOpen = decreasedKeys = reopened = 0;
+    resetNanos = searchNanos = extractNanos = wallNanos = 0;
+  }
+
+  /**
+   * Adds the metrics of other to these. Peak open list sizes are combined by maximum, and the
+   * wall time of other is ignored.
+   * @param other
+   */
+  public void add(SearchMetrics other) {
+    queries += other.queries;
+    goals += other.goals;
+    solved += other.solved;
+    expanded += other.expanded;
+    generated += other.generated;
+    peakOpen = Math.max(peakOpen, other.peakOpen);
+    decreasedKeys += other.decreasedKeys;
+    reopened += other.reopened;
+    resetNanos += other.resetNanos;
+    searchNanos += other.searchNanos;
+    extractNanos += other.extractNanos;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("queries=%d goals=%d solved=%d expanded=%d generated=%d peakOpen=%d"
+        + " decreasedKeys=%d reopened=%d reset=%.3fms search=%.3fms extract=%.3fms", queries,
+        goals, solved, expanded, generated, peakOpen, decreasedKeys, reopened, resetNanos / 1e6,
+        searchNanos / 1e6, extractNanos / 1e6));
+    if (wallNanos > 0) {
+      sb.append(String.format(" wall=%.3fms", wallNanos / 1e6));
+    }
+    return sb.toString();
+  }
+}
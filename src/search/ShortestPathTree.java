@@ -0,0 +1,199 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import operators.Operator;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * ShortestPathTree holds the result of a full Dijkstra sweep from a source cell: the cost of the
+ * cheapest path between the source and every cell, and optionally the parent links to rebuild
+ * those paths. A forward tree holds paths from the source to each cell. A reverse tree holds
+ * paths from each cell to the source, and evaluates every move in its forward direction, so
+ * costs charged on the entered cell are accounted for correctly.
+ * Cells are indexed by x * NCOLUMNS + y.
+ */
+public class ShortestPathTree {
+  //Cost of a cell that is not connected to the source.
+  public static final long UNREACHABLE = Long.MAX_VALUE;
+
+  private final int nColumns;
+  private final int source;
+  private final boolean reverse;
+  private final long[] cost;
+  //Next cell towards the source, -1 at the source. null if parents were not kept.
+  private final int[] parent;
+
+  private ShortestPathTree(int nColumns, int source, boolean reverse, long[] cost, int[] parent) {
+    this.nColumns = nColumns;
+    this.source = source;
+    this.reverse = reverse;
+    this.cost = cost;
+    this.parent = parent;
+  }
+
+  /**
+   * Runs a Dijkstra sweep over the whole environment.
+   * @param env
+   * @param operators : Operators that enable movement of the agent from one state to another.
+   * @param costFunctions : Cost functions that define the cost of a move
+   * @param sourceState
+   * @param reverse : true for costs from every cell to sourceState, false for costs from
+   * sourceState to every cell
+   * @param keepParents : Whether to keep parent links, 4 bytes per cell, so that paths can be
+   * rebuilt
+   * @return the tree
+   */
+  public static ShortestPathTree compute(Environment env, ArrayList<Operator> operators,
+      ArrayList<CostFunction> costFunctions, State sourceState, boolean reverse,
+      boolean keepParents) {
+    int nRows = env.getNRows();
+    int nColumns = env.getNColumns();
+    CostFunction[] cfs = costFunctions.toArray(new CostFunction[0]);
+    //Operators are only applied once here to learn their offsets.
+    int[] dx = new int[operators.size()];
+    int[] dy = new int[operators.size()];
+    State origin = new State(0, 0);
+    for (int i = 0; i < operators.size(); i++) {
+      State moved = operators.get(i).apply(origin);
+      dx[i] = reverse ? -moved.getX() : moved.getX();
+      dy[i] = reverse ? -moved.getY() : moved.getY();
+    }
+
+    long[] cost = new long[nRows * nColumns];
+    Arrays.fill(cost, UNREACHABLE);
+    int[] parent = keepParents ? new int[cost.length] : null;
+    IndexedMinHeap queue = new IndexedMinHeap(cost.length);
+    int source = sourceState.getX() * nColumns + sourceState.getY();
+    cost[source] = 0;
+    if (parent != null) {
+      parent[source] = -1;
+    }
+    queue.insert(source, 0);
+
+    while (queue.isEmpty() == false) {
+      int node = queue.poll();
+      int x = node / nColumns;
+      int y = node - x * nColumns;
+      for (int d = 0; d < dx.length; d++) {
+        int nextX = x + dx[d];
+        int nextY = y + dy[d];
+        if (env.isValid(nextX, nextY) == false) {
+          continue;
+        }
+        //A reverse tree follows moves from (nextX,nextY) to (x,y).
+        int fromX = reverse ? nextX : x;
+        int fromY = reverse ? nextY : y;
+        int toX = reverse ? x : nextX;
+        int toY = reverse ? y : nextY;
+        if (env.canMove(fromX, fromY, toX, toY) == false) {
+          continue;
+        }
+        long childCost = cost[node];
+        for (CostFunction cf : cfs) {
+          childCost += cf.cost(fromX, fromY, toX, toY);
+        }
+        int child = nextX * nColumns + nextY;
+        if (childCost < cost[child]) {
+          cost[child] = childCost;
+          if (parent != null) {
+            parent[child] = node;
+          }
+          queue.insertOrDecrease(child, childCost);
+        }
+      }
+    }
+    return new ShortestPathTree(nColumns, source, reverse, cost, parent);
+  }
+
+  /**
+   * @return the source state of the tree
+   */
+  public State getSource() {
+    return new State(source / nColumns, source % nColumns);
+  }
+
+  /**
+   * @return whether the tree holds costs to the source instead of from it
+   */
+  public boolean isReverse() {
+    return reverse;
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @return the cost between the source and (x,y), or UNREACHABLE
+   */
+  public long getCost(int x, int y) {
+    return cost[x * nColumns + y];
+  }
+
+  /**
+   * @param state
+   * @return the cost between the source and state, or UNREACHABLE
+   */
+  public long getCost(State state) {
+    return getCost(state.getX(), state.getY());
+  }
+
+  /**
+   * @return the cost of every cell, indexed by x * NCOLUMNS + y. Not a copy.
+   */
+  public long[] getCosts() {
+    return cost;
+  }
+
+  /**
+   * @return bytes taken by the cost and parent arrays
+   */
+  public long getBytes() {
+    return 8L * cost.length + (parent == null ? 0 : 4L * parent.length);
+  }
+
+  /**
+   * @param state
+   * @return the cheapest path from the source to state, or from state to the source for a
+   * reverse tree. Empty if state is not connected to the source.
+   * @throws IllegalStateException if the tree was computed without parents
+   */
+  public ArrayList<State> getPath(State state) {
+    if (parent == null) {
+      throw new IllegalStateException("Shortest path tree was computed without parents");
+    }
+    ArrayList<State> path = new ArrayList<State>();
+    int cell = state.getX() * nColumns + state.getY();
+    if (cost[cell] == UNREACHABLE) {
+      return path;
+    }
+    for (; cell != -1; cell = parent[cell]) {
+      path.add(new State(cell / nColumns, cell % nColumns));
+    }
+    if (reverse == false) {
+      //path runs from state to the source.
+      Collections.reverse(path);
+    }
+    return path;
+  }
+
+  /**
+   * @param state
+   * @return the path of getPath in compact form, built from the parent links
+   * @throws IllegalStateException if the tree was computed without parents
+   */
+  public CompactPath getCompactPath(State state) {
+    if (parent == null) {
+      throw new IllegalStateException("Shortest path tree was computed without parents");
+    }
+    int cell = state.getX() * nColumns + state.getY();
+    if (cost[cell] == UNREACHABLE) {
+      return CompactPath.EMPTY;
+    }
+    return CompactPath.fromParents(parent, cell, nColumns, reverse);
+  }
+}
@@ -2,13 +2,13 @@ package search;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 
 import costfunction.CostFunction;
 import environment.Environment;
+import operators.Directions;
 import operators.Operator;
 import state.State;
 
@@ -74,10 +74,10 @@ class UCSNode {
  * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
  * UCSSearch implements UCS search algorithm
  */
-public class UCSSearch implements Search {
+public class UCSSearch implements MultiGoalSearch, CostSearch {
   Environment env;
-  //The running queue
-  PriorityQueue<UCSNode> queue;
+  //The running queue, keyed by cell index x * NCOLUMNS + y
+  IndexedMinHeap queue;
   //Map that holds nodes that are already processed.
   HashMap<UCSNode, UCSNode> closed;
   //Map that holds nodes that are yet to be processed.
@@ -85,28 +85,36 @@ public class UCSSearch implements Search {
   //Parent links
   HashMap<UCSNode, UCSNode> parent;
   ArrayList<Operator> operators;
+  //Move mask bit of each operator, 0 if an operator is not a unit move.
+  int[] operatorBits;
   //The cost function f(n)
   ArrayList<CostFunction> costFunctions;
+  //Set while searching for costs only, when parent links are not kept.
+  boolean costOnly;
 
-  class UCSComparator implements Comparator<UCSNode> {
-
-    public int compare(UCSNode node1, UCSNode node2) {
-      if (node1.getCost() <= node2.getCost()) {
-        return -1;
-      }
-      if (node1.getCost() > node2.getCost()) {
-        return 1;
-      }
-      return 0;
-    }
-
-  }
+  SearchListener listener;
+  SearchMetrics metrics;
+  boolean quiet;
 
   public void reset() {
+    long begin = SearchMetrics.clock(metrics);
     open.clear();
     closed.clear();
     queue.clear();
     parent.clear();
+    if (metrics != null) {
+      metrics.clear();
+      metrics.resetNanos = System.nanoTime() - begin;
+    }
+  }
+
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+    this.metrics = listener == null ? null : new SearchMetrics();
+  }
+
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
   }
 
   /**
@@ -118,14 +126,22 @@ public class UCSSearch implements Search {
       ArrayList<CostFunction> costFunctions) {
     this.env = env;
     this.operators = operators;
+    operatorBits = new int[operators.size()];
+    for (int i = 0; i < operators.size(); i++) {
+      operatorBits[i] = Directions.bitOf(operators.get(i));
+    }
     this.costFunctions = costFunctions;
-    queue = new PriorityQueue<UCSNode>(new UCSComparator());
+    queue = new IndexedMinHeap(env.getNRows() * env.getNColumns(), true);
     open = new HashMap<UCSNode, UCSNode>();
     closed = new HashMap<UCSNode, UCSNode>();
     parent = new HashMap<UCSNode, UCSNode>();
     reset();
   }
 
+  public Search newInstance() {
+    return new UCSSearch(env, operators, costFunctions);
+  }
+
   /**
    * @param startState
    * @param goalState
@@ -133,75 +149,244 @@ public class UCSSearch implements Search {
    * startState to endState
    */
   public ArrayList<State> search(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    UCSNode node = sweep(startState, goalState);
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<State> solution = extractSolution(node);
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, 1, node != null ? 1 : 0, listener);
+    }
+    return solution;
+  }
+
+  /**
+   * Runs a single UCS (Dijkstra) sweep from startState that stops once every reachable goal
+   * state has been settled. All paths are extracted from the shared parent links.
+   * @param startState
+   * @param goalStates
+   * @return one sequence of states per goal state, in the order of goalStates
+   */
+  public ArrayList<ArrayList<State>> search(State startState, ArrayList<State> goalStates) {
+    long begin = SearchMetrics.clock(metrics);
+    HashMap<State, UCSNode> goalNodes = sweep(startState, goalStates);
+    long extractBegin = SearchMetrics.clock(metrics);
+    ArrayList<ArrayList<State>> solutions = new ArrayList<ArrayList<State>>();
+    for (State goalState : goalStates) {
+      solutions.add(extractSolution(goalNodes.get(goalState)));
+    }
+    if (metrics != null) {
+      metrics.finish(begin, System.nanoTime() - extractBegin, goalStates.size(),
+          solved(goalNodes, goalStates), listener);
+    }
+    return solutions;
+  }
+
+  /**
+   * @param startState
+   * @param goalState
+   * @return the cost of the cheapest path from startState to goalState, or UNREACHABLE
+   */
+  public long searchCost(State startState, State goalState) {
+    long begin = SearchMetrics.clock(metrics);
+    costOnly = true;
+    UCSNode node;
+    try {
+      node = sweep(startState, goalState);
+    } finally {
+      costOnly = false;
+    }
+    if (metrics != null) {
+      metrics.finish(begin, 0, 1, node != null ? 1 : 0, listener);
+    }
+    return node != null ? node.getCost() : UNREACHABLE;
+  }
+
+  /**
+   * @param startState
+   * @param goalStates
+   * @return the cost of the cheapest path from startState to each goal state, or UNREACHABLE
+   */
+  public long[] searchCosts(State startState, ArrayList<State> goalStates) {
+    long begin = SearchMetrics.clock(metrics);
+    costOnly = true;
+    HashMap<State, UCSNode> goalNodes;
+    try {
+      goalNodes = sweep(startState, goalStates);
+    } finally {
+      costOnly = false;
+    }
+    long[] costs = new long[goalStates.size()];
+    for (int i = 0; i < costs.length; i++) {
+      UCSNode goalNode = goalNodes.get(goalStates.get(i));
+      costs[i] = goalNode != null ? goalNode.getCost() : UNREACHABLE;
+    }
+    if (metrics != null) {
+      metrics.finish(begin, 0, goalStates.size(), solved(goalNodes, goalStates), listener);
+    }
+    return costs;
+  }
+
+  /**
+   * Searches from startState until goalState is settled.
+   * @param startState
+   * @param goalState
+   * @return the goal node, or null if goalState cannot be reached
+   */
+  private UCSNode sweep(State startState, State goalState) {
     UCSNode node = new UCSNode(startState, 0);
-    queue.offer(node);
-    parent.put(node, null);
+    queue.insert(index(startState), 0);
+    link(node, null);
     open.put(node, node);
 
-    boolean solutionFound = false;
-    UCSNode child = null;
-
     while (queue.isEmpty() == false) {
-      node = queue.poll();
-      //Note that startState will be updated every iteration.
-      startState = node.getState();
-      if (startState.equals(goalState)) {
-        solutionFound = true;
-        break;
+      //open always holds the latest node of a state.
+      node = open.get(new UCSNode(stateOf(queue.poll()), 0));
+      if (node.getState().equals(goalState)) {
+        return node;
       } else {
-        //Explore next/adjacent/successor states 
-        State nextState;
-        for (Operator operator : operators) {
-          nextState = operator.apply(startState);
-          if (env.isValid(nextState) && env.canMove(startState, nextState)) {
-            //Evaluate a state only if it is feasible
-            long cost = node.getCost();
-            
-            //Calculate costs incurred to reach this state.
-            for (CostFunction cf : costFunctions) {
-              cost += cf.cost(startState, nextState);
-            }
-            //Generate child node.
-            child = new UCSNode(nextState, cost);
-            if (open.containsKey(child) == false && closed.containsKey(child) == false) {
-              //child unexplored till now
-              queue.offer(child);
-              parent.put(child, node);
-              open.put(child, child);
-            } else if (open.containsKey(child)) {
-              //child is ready for processing.
-              Long prevCost = open.get(child).getCost();
-              if (prevCost > child.getCost()) {
-                //found a better path to child. Hence,update.
-                open.put(child, child);
-                queue.remove(child);
-                queue.offer(child);
-                parent.put(child, node);
-              }
-
-            } else if (closed.containsKey(child)) {
-              //child already explored and processed.
-              Long prevCost = closed.get(child).getCost();
-              if (prevCost > child.getCost()) {
-                //found a better path to child. Hence,update.
-                closed.remove(child);
-                open.put(child, child);
-                queue.remove(child);
-                queue.offer(child);
-                parent.put(child, node);
-              }
-            }
-          }
-        }
+        expand(node);
+      }
+      //Done exploring this node. Hence, put it in the closed list.
+      closed.put(node, node);
+    }
+    return null;
+  }
+
+  /**
+   * Searches from startState until every reachable goal state has been settled.
+   * @param startState
+   * @param goalStates
+   * @return the node of each goal state that can be reached
+   */
+  private HashMap<State, UCSNode> sweep(State startState, ArrayList<State> goalStates) {
+    HashSet<State> pendingGoals = new HashSet<State>(goalStates);
+    HashMap<State, UCSNode> goalNodes = new HashMap<State, UCSNode>();
+    UCSNode node = new UCSNode(startState, 0);
+    queue.insert(index(startState), 0);
+    link(node, null);
+    open.put(node, node);
+
+    while (queue.isEmpty() == false && pendingGoals.isEmpty() == false) {
+      //open always holds the latest node of a state.
+      node = open.get(new UCSNode(stateOf(queue.poll()), 0));
+      if (pendingGoals.remove(node.getState())) {
+        //A goal is settled once it leaves the queue.
+        goalNodes.put(node.getState(), node);
       }
+      expand(node);
       //Done exploring this node. Hence, put it in the closed list.
       closed.put(node, node);
     }
+    return goalNodes;
+  }
+
+  /**
+   * @return the number of goal states that have a goal node
+   */
+  private int solved(HashMap<State, UCSNode> goalNodes, ArrayList<State> goalStates) {
+    int solved = 0;
+    for (State goalState : goalStates) {
+      if (goalNodes.containsKey(goalState)) {
+        solved++;
+      }
+    }
+    return solved;
+  }
 
-    //Extract solution
+  /**
+   * Keeps the parent link of child, unless only costs are searched for.
+   * @param child
+   * @param node
+   */
+  private void link(UCSNode child, UCSNode node) {
+    if (costOnly == false) {
+      parent.put(child, node);
+    }
+  }
+
+  /**
+   * Explores next/adjacent/successor states of node and updates the running queue.
+   * @param node
+   */
+  private void expand(UCSNode node) {
+    State startState = node.getState();
+    if (metrics != null) {
+      metrics.expanded++;
+    }
+    boolean masked = env.hasMoveMasks();
+    int moveMask = masked ? env.getMoveMask(startState.getX(), startState.getY()) : 0;
+    State nextState;
+    for (int i = 0; i < operators.size(); i++) {
+      //Evaluate a state only if it is feasible
+      if (masked && operatorBits[i] != 0) {
+        //Feasibility is precomputed. Skip infeasible moves without applying the operator.
+        if ((moveMask & operatorBits[i]) == 0) {
+          continue;
+        }
+        nextState = operators.get(i).apply(startState);
+      } else {
+        nextState = operators.get(i).apply(startState);
+        if (!env.isValid(nextState) || !env.canMove(startState, nextState)) {
+          continue;
+        }
+      }
+      if (metrics != null) {
+        metrics.generated++;
+      }
+      long cost = node.getCost();
+
+      //Calculate costs incurred to reach this state.
+      for (CostFunction cf : costFunctions) {
+        cost += cf.cost(startState, nextState);
+      }
+      //Generate child node.
+      UCSNode child = new UCSNode(nextState, cost);
+      if (closed.containsKey(child)) {
+        //child already explored and processed. Checked before open, which keeps expanded nodes.
+        Long prevCost = closed.get(child).getCost();
+        if (prevCost > child.getCost()) {
+          //found a better path to child. Hence,update.
+          closed.remove(child);
+          open.put(child, child);
+          queue.insertOrDecrease(index(nextState), child.getCost());
+          if (metrics != null) {
+            metrics.reopened++;
+            metrics.opened(queue.size());
+          }
+          link(child, node);
+        }
+      } else if (open.containsKey(child)) {
+        //child is ready for processing.
+        Long prevCost = open.get(child).getCost();
+        if (prevCost > child.getCost()) {
+          //found a better path to child. Hence,update.
+          open.put(child, child);
+          if (metrics != null) {
+            metrics.decreasedKeys++;
+          }
+          queue.insertOrDecrease(index(nextState), child.getCost());
+          link(child, node);
+        }
+      } else {
+        //child unexplored till now
+        queue.insert(index(nextState), child.getCost());
+        link(child, node);
+        open.put(child, child);
+        if (metrics != null) {
+          metrics.opened(queue.size());
+        }
+      }
+    }
+  }
+
+  /**
+   * @param node : The goal node, or null if the goal was not reached
+   * @return A sequence of states that correspond to the path from the start state to node
+   */
+  private ArrayList<State> extractSolution(UCSNode node) {
     ArrayList<State> solution = new ArrayList<State>();
     long solutionCost = 0;
-    if (solutionFound == true) {
+    if (node != null) {
       solutionCost = node.getCost();
       while (node != null) {
         solution.add(node.getState());
@@ -212,8 +397,25 @@ public class UCSSearch implements Search {
     //solution contains nodes from goal to start. Hence, reverse before returning. 
     Collections.reverse(solution);
 
-    System.out.println(solutionCost);
+    if (quiet == false) {
+      System.out.println(solutionCost);
+    }
     return solution;
+  }
 
+  /**
+   * @param state
+   * @return index of state in the running queue
+   */
+  private int index(State state) {
+    return state.getX() * env.getNColumns() + state.getY();
+  }
+
+  /**
+   * @param index
+   * @return state at index in the running queue
+   */
+  private State stateOf(int index) {
+    return new State(index / env.getNColumns(), index % env.getNColumns());
   }
 }
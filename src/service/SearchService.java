@@ -0,0 +1,386 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import costfunction.LandmarkCostFunction;
+import environment.Environment;
+import environment.ReachabilityIndex;
+import io.PathFormat;
+import search.Search;
+import search.SearchListener;
+import state.State;
+import strategy.PathCache;
+import strategy.SearchContext;
+import strategy.SearchFactory;
+import strategy.ShortestPathTreeCache;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Answers a stream of queries against one environment that stays loaded, together with
+ * everything precomputed for it: move masks, landmark tables and the tables of the search
+ * engines.
+ *
+ * Queries are lines of text. Coordinates are y x, as in the input file:
+ * A*  0 0  1 1  4 2 --> Algorithm, start state, then one or more goal states
+ * The response is one line per goal state, in the format of output.txt: the path as y,x pairs
+ * separated by spaces, or FAIL. A query that cannot be answered gets the single line
+ * ERROR message. Empty lines are ignored, and QUIT ends the session. Costs are not printed.
+ *
+ * Each session searches on search contexts of its own, one per algorithm, whose engines hold
+ * arrays over the whole terrain. When a session ends its contexts are kept for the next
+ * session, and at most maxSessions sessions are served at once, so the engines built never
+ * exceed maxSessions per algorithm.
+ */
+public class SearchService {
+  public static final String QUIT = "QUIT";
+  public static final String ERROR = "ERROR";
+  public static final int DEFAULT_MAX_SESSIONS = 8;
+
+  private final Environment env;
+  private final String engine;
+  private final String heuristic;
+  private final LandmarkCostFunction landmarks;
+  private boolean multiGoal;
+  private ExecutorService executor;
+  private SearchListener listener;
+  private PathCache cache;
+  private ShortestPathTreeCache treeCache;
+  private ReachabilityIndex reachability;
+  private int maxSessions = DEFAULT_MAX_SESSIONS;
+  //Socket that listen accepts connections on, or null.
+  private ServerSocket server;
+  //Set by stop, so that listen returns instead of accepting more connections.
+  private boolean stopped;
+  //Search strategy of every algorithm served so far. Sessions search on their own instances.
+  private final HashMap<String, Search> prototypes = new HashMap<String, Search>();
+  //Search contexts of ended sessions, by algorithm, for later sessions to reuse.
+  private final HashMap<String, ArrayDeque<SearchContext>> idleContexts =
+      new HashMap<String, ArrayDeque<SearchContext>>();
+
+  /**
+   * @param env
+   * @param engine : Search engine, see SearchFactory.create
+   * @param heuristic : A* heuristic names, see SearchFactory.heuristics
+   * @param landmarks : Prebuilt landmark heuristic, or null
+   */
+  public SearchService(Environment env, String engine, String heuristic,
+      LandmarkCostFunction landmarks) {
+    this.env = env;
+    this.engine = engine;
+    this.heuristic = heuristic;
+    this.landmarks = landmarks;
+  }
+
+  /**
+   * @param multiGoal
+   * Set whether all goal states of a query are searched for in a single search.
+   */
+  public void setMultiGoal(boolean multiGoal) {
+    this.multiGoal = multiGoal;
+  }
+
+  /**
+   * @param executor
+   * Set the executor on which the goal states of a query are searched for concurrently.
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @param listener
+   * Set the listener that receives the metrics of every search and query. It is shared by all
+   * sessions, so it must be thread safe when serving a socket.
+   */
+  public void setListener(SearchListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * @param cache
+   * Set the cache of paths shared by all sessions, or null.
+   */
+  public void setCache(PathCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * @param treeCache
+   * Set the cache of shortest path trees shared by all sessions, or null.
+   */
+  public void setTreeCache(ShortestPathTreeCache treeCache) {
+    this.treeCache = treeCache;
+  }
+
+  /**
+   * @param reachability
+   * Set the connected components of the environment, so that unreachable goal states fail
+   * without a search. null searches for every goal state.
+   */
+  public void setReachability(ReachabilityIndex reachability) {
+    this.reachability = reachability;
+  }
+
+  /**
+   * @param maxSessions
+   * Set the number of connections served at once by listen. Connections beyond it are
+   * answered with an ERROR line and closed.
+   */
+  public void setMaxSessions(int maxSessions) {
+    this.maxSessions = maxSessions;
+  }
+
+  /**
+   * Answers queries from in on the calling thread until QUIT or end of input.
+   * @param in
+   * @param out : Receives the responses. Flushed after every response.
+   * @throws IOException
+   */
+  public void serve(InputStream in, OutputStream out) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+        StandardCharsets.US_ASCII));
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+    //Search context of every algorithm used in this session.
+    HashMap<String, SearchContext> contexts = new HashMap<String, SearchContext>();
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (line.equalsIgnoreCase(QUIT)) {
+          break;
+        }
+        writer.write(answer(contexts, line));
+        writer.flush();
+      }
+    } finally {
+      release(contexts);
+    }
+  }
+
+  /**
+   * Stops listening, and closes the search contexts kept for later sessions and the search
+   * strategies built for the algorithms served. Sessions must have ended.
+   */
+  public synchronized void close() {
+    stop();
+    for (ArrayDeque<SearchContext> idle : idleContexts.values()) {
+      for (SearchContext context : idle) {
+        context.close();
+      }
+    }
+    idleContexts.clear();
+    for (Search search : prototypes.values()) {
+      search.close();
+    }
+    prototypes.clear();
+  }
+
+  /**
+   * Makes listen return, from any thread, by closing its server socket. Sessions already
+   * accepted go on until they end.
+   */
+  public synchronized void stop() {
+    stopped = true;
+    if (server != null) {
+      try {
+        server.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Accepts connections on the loopback interface and serves each on its own thread, until
+   * stop or close is called or the server socket fails.
+   * @param port
+   * @throws IOException
+   */
+  public void listen(int port) throws IOException {
+    final Semaphore sessions = new Semaphore(maxSessions);
+    try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      synchronized (this) {
+        if (stopped) {
+          return;
+        }
+        this.server = server;
+      }
+      while (true) {
+        final Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketException e) {
+          synchronized (this) {
+            if (stopped) {
+              //Closed by stop.
+              return;
+            }
+          }
+          throw e;
+        }
+        if (sessions.tryAcquire() == false) {
+          try (Socket s = socket) {
+            s.getOutputStream().write((ERROR + " busy, at most " + maxSessions
+                + " sessions at once\n").getBytes(StandardCharsets.US_ASCII));
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+          continue;
+        }
+        Thread session = new Thread(new Runnable() {
+          public void run() {
+            try (Socket s = socket) {
+              serve(s.getInputStream(), s.getOutputStream());
+            } catch (IOException e) {
+              e.printStackTrace();
+            } finally {
+              sessions.release();
+            }
+          }
+        }, "search-session-" + socket.getPort());
+        session.setDaemon(true);
+        session.start();
+      }
+    }
+  }
+
+  /**
+   * @param contexts : Search contexts of the session
+   * @param line : A query
+   * @return the response to the query, one line per goal state
+   */
+  private String answer(HashMap<String, SearchContext> contexts, String line) {
+    String[] tokens = line.split("\\s+");
+    if (tokens.length < 5 || tokens.length % 2 == 0) {
+      return ERROR + " expected: algorithm startY startX goalY goalX [goalY goalX]...\n";
+    }
+    State startState;
+    ArrayList<State> goalStates = new ArrayList<State>();
+    try {
+      startState = state(tokens[1], tokens[2]);
+      for (int i = 3; i < tokens.length; i += 2) {
+        goalStates.add(state(tokens[i], tokens[i + 1]));
+      }
+    } catch (IllegalArgumentException e) {
+      return ERROR + " " + e.getMessage() + "\n";
+    }
+
+    ArrayList<ArrayList<State>> paths;
+    try {
+      paths = context(contexts, tokens[0]).search(startState, goalStates);
+    } catch (RuntimeException e) {
+      return ERROR + " " + e + "\n";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (ArrayList<State> path : paths) {
+      PathFormat.append(sb, path).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param y
+   * @param x
+   * @return the state at (x,y)
+   * @throws IllegalArgumentException if the coordinates are not numbers inside the terrain
+   */
+  private State state(String y, String x) {
+    State state = new State(Integer.parseInt(x), Integer.parseInt(y));
+    if (env.isValid(state) == false) {
+      throw new IllegalArgumentException(y + " " + x + " is outside the terrain");
+    }
+    return state;
+  }
+
+  /**
+   * @param contexts : Search contexts of the session
+   * @param algorithm
+   * @return the search context of the session for algorithm, reused from an ended session
+   * when there is one
+   */
+  private SearchContext context(HashMap<String, SearchContext> contexts, String algorithm) {
+    String key = SearchFactory.algorithm(algorithm);
+    SearchContext context = contexts.get(key);
+    if (context != null) {
+      return context;
+    }
+    context = acquire(key);
+    if (context == null) {
+      context = new SearchContext();
+      context.setStrategy(prototype(key).newInstance());
+      context.setQuiet(true);
+      context.setMultiGoal(multiGoal);
+      context.setExecutor(executor);
+      context.setListener(listener);
+      if (cache != null) {
+        context.setCache(cache, SearchFactory.costModel(key, env));
+      }
+      if (treeCache != null) {
+        context.setTreeCache(treeCache, key);
+      }
+      context.setReachability(reachability);
+    }
+    contexts.put(key, context);
+    return context;
+  }
+
+  /**
+   * @param key : Algorithm
+   * @return a search context an ended session left for key, or null if there is none
+   */
+  private synchronized SearchContext acquire(String key) {
+    ArrayDeque<SearchContext> idle = idleContexts.get(key);
+    return idle == null ? null : idle.poll();
+  }
+
+  /**
+   * Keeps the search contexts of an ended session for later sessions.
+   * @param contexts : Search contexts of the session, by algorithm
+   */
+  private synchronized void release(HashMap<String, SearchContext> contexts) {
+    for (Map.Entry<String, SearchContext> entry : contexts.entrySet()) {
+      ArrayDeque<SearchContext> idle = idleContexts.get(entry.getKey());
+      if (idle == null) {
+        idle = new ArrayDeque<SearchContext>();
+        idleContexts.put(entry.getKey(), idle);
+      }
+      idle.push(entry.getValue());
+    }
+  }
+
+  /**
+   * Builds the search strategy of an algorithm once, so that its tables are shared by every
+   * session.
+   * @param key
+   * @return the search strategy of the algorithm
+   */
+  private synchronized Search prototype(String key) {
+    Search search = prototypes.get(key);
+    if (search == null) {
+      search = SearchFactory.create(key, engine, heuristic, landmarks, env);
+      prototypes.put(key, search);
+    }
+    return search;
+  }
+}
@@ -0,0 +1,24 @@
+package strategy;
+
+import java.util.ArrayList;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * BatchListener receives the routes of a BatchSearch job as soon as they are known, instead of
+ * at the end of the batch.
+ */
+public interface BatchListener {
+
+  /**
+   * Called once per job, when the jobs sharing its start state have been searched, on the
+   * thread that searched them. Calls for different jobs may come from several threads at once.
+   * @param job : Index of the job in the batch
+   * @param costs : Cost of the route to each goal state of the job, in order, or
+   * BatchResult.UNREACHABLE
+   * @param paths : Route to each goal state of the job, empty if unreachable, or null if paths
+   * are not kept
+   */
+  void jobFinished(int job, long[] costs, ArrayList<ArrayList<State>> paths);
+}
@@ -0,0 +1,97 @@
+package strategy;
+
+import java.util.ArrayList;
+
+import search.CompactPath;
+import search.ShortestPathTree;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Routes found by a BatchSearch, as a matrix with one row per job and one column per goal
+ * state of the job. Routes are kept as CompactPaths, and decoded to States on request.
+ */
+public class BatchResult {
+  //Cost of a route to a goal state that cannot be reached.
+  public static final long UNREACHABLE = ShortestPathTree.UNREACHABLE;
+
+  private final long[][] costs;
+  //null if paths are not kept.
+  private final ArrayList<ArrayList<CompactPath>> paths;
+
+  /**
+   * @param jobs : Number of jobs in the batch
+   * @param keepPaths
+   */
+  BatchResult(int jobs, boolean keepPaths) {
+    costs = new long[jobs][];
+    if (keepPaths) {
+      paths = new ArrayList<ArrayList<CompactPath>>();
+      for (int job = 0; job < jobs; job++) {
+        paths.add(null);
+      }
+    } else {
+      paths = null;
+    }
+  }
+
+  /**
+   * @param job
+   * @param jobCosts
+   * @param jobPaths : null if paths are not kept
+   */
+  synchronized void set(int job, long[] jobCosts, ArrayList<CompactPath> jobPaths) {
+    costs[job] = jobCosts;
+    if (paths != null) {
+      paths.set(job, jobPaths);
+    }
+  }
+
+  /**
+   * @param job
+   * @param goal : Index of the goal state in the job
+   * @return the cost of the route, or UNREACHABLE
+   */
+  public synchronized long getCost(int job, int goal) {
+    return costs[job][goal];
+  }
+
+  /**
+   * @param job
+   * @return the cost of the route to each goal state of the job. Not a copy.
+   */
+  public synchronized long[] getCosts(int job) {
+    return costs[job];
+  }
+
+  /**
+   * @param job
+   * @param goal : Index of the goal state in the job
+   * @return a new copy of the route, empty if the goal state cannot be reached
+   * @throws IllegalStateException if paths were not kept
+   */
+  public ArrayList<State> getPath(int job, int goal) {
+    return getCompactPath(job, goal).decode();
+  }
+
+  /**
+   * @param job
+   * @param goal : Index of the goal state in the job
+   * @return the route, empty if the goal state cannot be reached
+   * @throws IllegalStateException if paths were not kept
+   */
+  public synchronized CompactPath getCompactPath(int job, int goal) {
+    if (paths == null) {
+      throw new IllegalStateException("Batch was searched without keeping paths");
+    }
+    return paths.get(job).get(goal);
+  }
+
+  public boolean hasPaths() {
+    return paths != null;
+  }
+
+  public int getJobCount() {
+    return costs.length;
+  }
+}
@@ -0,0 +1,364 @@
+package strategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import costfunction.CostFunction;
+import environment.Environment;
+import environment.ReachabilityIndex;
+import search.CompactPath;
+import search.CostSearch;
+import search.Search;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Searches for many routes at once, between many start states and many goal states on the
+ * same environment. Jobs that share a start state are grouped, and each group is answered by a
+ * single search from the start state for the goal states of all its jobs. With a
+ * MultiGoalSearch strategy, such as the grid engine, that search keeps its frontier from one
+ * goal state to the next, so each start state is searched from once however many jobs and goal
+ * states it has. For UCS this grows one shortest path tree per start state, only as far as its
+ * dearest goal state.
+ *
+ * Groups run concurrently on the executor, the largest first so that the batch is not held up
+ * by a large group started last. Each executor thread keeps its own SearchContext and search
+ * instance across batches. The routes of a job are passed to the listener as soon as its group
+ * is done, and kept in the result as CompactPaths. The searches are quiet: they do not print the
+ * cost of each route.
+ */
+public class BatchSearch {
+  private final Environment env;
+  private final String algorithm;
+  private final ArrayList<CostFunction> costFunctions;
+  private ExecutorService executor;
+  private boolean keepPaths = true;
+  private PathCache cache;
+  private ShortestPathTreeCache treeCache;
+  private ReachabilityIndex reachability;
+  //Search instance and search context of each thread, created on first use.
+  private final ThreadLocal<Search> searches;
+  private final ThreadLocal<SearchContext> contexts;
+  //Every instance made for searches and not yet used by a context, to be closed with the batch
+  //search.
+  private final ArrayList<Search> instances = new ArrayList<Search>();
+  //Every search context of the threads, to be closed with the batch search. Each closes its
+  //instance.
+  private final ArrayList<SearchContext> contextList = new ArrayList<SearchContext>();
+
+  /**
+   * @param env
+   * @param algorithm : BFS, UCS or A*, the algorithm of strategy
+   * @param strategy : Search strategy, ideally a MultiGoalSearch. Threads search on their own
+   * instances of it.
+   */
+  public BatchSearch(Environment env, String algorithm, final Search strategy) {
+    this.env = env;
+    this.algorithm = SearchFactory.algorithm(algorithm);
+    this.costFunctions = SearchFactory.costFunctions(algorithm, env);
+    this.searches = new ThreadLocal<Search>() {
+      @Override
+      protected Search initialValue() {
+        Search search = strategy.newInstance();
+        search.setQuiet(true);
+        synchronized (instances) {
+          instances.add(search);
+        }
+        return search;
+      }
+    };
+    this.contexts = new ThreadLocal<SearchContext>() {
+      @Override
+      protected SearchContext initialValue() {
+        SearchContext context = new SearchContext();
+        context.setQuiet(true);
+        Search search = searches.get();
+        context.setStrategy(search);
+        context.setMultiGoal(true);
+        if (cache != null) {
+          context.setCache(cache, SearchFactory.costModel(BatchSearch.this.algorithm,
+              BatchSearch.this.env));
+        }
+        if (treeCache != null) {
+          context.setTreeCache(treeCache, BatchSearch.this.algorithm);
+        }
+        context.setReachability(reachability);
+        //The context closes search from now on.
+        synchronized (instances) {
+          instances.remove(search);
+          contextList.add(context);
+        }
+        return context;
+      }
+    };
+  }
+
+  /**
+   * @param executor
+   * Set the executor on which groups of jobs are searched concurrently, one task per start
+   * state. null searches the groups one at a time on the calling thread.
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @param keepPaths
+   * Set whether the routes themselves are kept, or only their costs. On by default. Without
+   * paths, a CostSearch strategy searches for costs only, without parent links, unless a path
+   * or tree cache is set.
+   */
+  public void setKeepPaths(boolean keepPaths) {
+    this.keepPaths = keepPaths;
+  }
+
+  /**
+   * @param cache
+   * Set the cache of paths, or null. Like setTreeCache and setReachability, it must be set
+   * before the first search, as the search contexts of the threads are set up on first use.
+   */
+  public void setCache(PathCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * @param treeCache
+   * Set the cache of shortest path trees, or null.
+   */
+  public void setTreeCache(ShortestPathTreeCache treeCache) {
+    this.treeCache = treeCache;
+  }
+
+  /**
+   * @param reachability
+   * Set the connected components of the environment, so that unreachable goal states fail
+   * without a search, or null.
+   */
+  public void setReachability(ReachabilityIndex reachability) {
+    this.reachability = reachability;
+  }
+
+  /**
+   * Closes the search contexts and search instances of the threads, and drops those of the
+   * calling thread. Other threads drop theirs once the batch search is garbage collected. The
+   * strategy passed in is left open. The batch search must not be used afterwards.
+   */
+  public void close() {
+    synchronized (instances) {
+      for (SearchContext context : contextList) {
+        context.close();
+      }
+      contextList.clear();
+      for (Search search : instances) {
+        search.close();
+      }
+      instances.clear();
+    }
+    contexts.remove();
+    searches.remove();
+  }
+
+  /**
+   * Searches for the routes of all jobs, and returns once every job is done.
+   * @param jobs
+   * @param listener : Receives the routes of each job as soon as they are known, or null
+   * @return the routes of all jobs
+   */
+  public BatchResult search(ArrayList<RouteJob> jobs, final BatchListener listener) {
+    final BatchResult result = new BatchResult(jobs.size(), keepPaths);
+    ArrayList<Group> groups = group(jobs);
+    if (executor == null) {
+      for (Group group : groups) {
+        search(group, jobs, result, listener);
+      }
+      return result;
+    }
+
+    final ArrayList<RouteJob> batch = jobs;
+    ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (final Group group : groups) {
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() {
+          search(group, batch, result, listener);
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while searching", ie);
+    } catch (ExecutionException ee) {
+      throw new IllegalStateException("Search failed", ee.getCause());
+    } finally {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param jobs
+   * @return the jobs grouped by start state, largest group first
+   */
+  private ArrayList<Group> group(ArrayList<RouteJob> jobs) {
+    int nColumns = env.getNColumns();
+    LinkedHashMap<Integer, Group> groups = new LinkedHashMap<Integer, Group>();
+    for (int job = 0; job < jobs.size(); job++) {
+      State startState = jobs.get(job).getStartState();
+      int start = startState.getX() * nColumns + startState.getY();
+      Group group = groups.get(start);
+      if (group == null) {
+        group = new Group(startState);
+        groups.put(start, group);
+      }
+      group.jobs.add(job);
+      for (State goalState : jobs.get(job).getGoalStates()) {
+        int goal = goalState.getX() * nColumns + goalState.getY();
+        if (group.goalIndex.containsKey(goal) == false) {
+          group.goalIndex.put(goal, group.goalStates.size());
+          group.goalStates.add(goalState);
+        }
+      }
+    }
+    ArrayList<Group> ordered = new ArrayList<Group>(groups.values());
+    Collections.sort(ordered, new Comparator<Group>() {
+      public int compare(Group group1, Group group2) {
+        return Integer.compare(group2.goalStates.size(), group1.goalStates.size());
+      }
+    });
+    return ordered;
+  }
+
+  /**
+   * Searches from the start state of group for all its goal states, and completes its jobs.
+   * @param group
+   * @param jobs
+   * @param result
+   * @param listener
+   */
+  private void search(Group group, ArrayList<RouteJob> jobs, BatchResult result,
+      BatchListener listener) {
+    ArrayList<ArrayList<State>> paths = null;
+    ArrayList<CompactPath> compactPaths = null;
+    long[] goalCosts;
+    if (keepPaths == false && cache == null && treeCache == null
+        && searches.get() instanceof CostSearch) {
+      goalCosts = searchCosts(group);
+    } else {
+      paths = contexts.get().search(group.startState, group.goalStates);
+      goalCosts = new long[paths.size()];
+      for (int i = 0; i < goalCosts.length; i++) {
+        goalCosts[i] = cost(paths.get(i));
+      }
+      if (keepPaths) {
+        //Once per goal state, however many jobs share it.
+        compactPaths = new ArrayList<CompactPath>(paths.size());
+        for (ArrayList<State> path : paths) {
+          compactPaths.add(CompactPath.encode(path));
+        }
+      }
+    }
+
+    int nColumns = env.getNColumns();
+    for (int job : group.jobs) {
+      ArrayList<State> goalStates = jobs.get(job).getGoalStates();
+      long[] jobCosts = new long[goalStates.size()];
+      ArrayList<CompactPath> jobPaths = keepPaths ? new ArrayList<CompactPath>() : null;
+      ArrayList<ArrayList<State>> listenerPaths = keepPaths && listener != null
+          ? new ArrayList<ArrayList<State>>() : null;
+      for (int i = 0; i < jobCosts.length; i++) {
+        State goalState = goalStates.get(i);
+        int index = group.goalIndex.get(goalState.getX() * nColumns + goalState.getY());
+        jobCosts[i] = goalCosts[index];
+        if (jobPaths != null) {
+          jobPaths.add(compactPaths.get(index));
+        }
+        if (listenerPaths != null) {
+          listenerPaths.add(paths.get(index));
+        }
+      }
+      result.set(job, jobCosts, jobPaths);
+      if (listener != null) {
+        listener.jobFinished(job, jobCosts, listenerPaths);
+      }
+    }
+  }
+
+  /**
+   * Searches from the start state of group for the costs of its goal states only. Goal states
+   * that cannot be reached are not searched for.
+   * @param group
+   * @return the cost of each goal state of group, or BatchResult.UNREACHABLE
+   */
+  private long[] searchCosts(Group group) {
+    long[] goalCosts = new long[group.goalStates.size()];
+    ArrayList<State> reachable = new ArrayList<State>();
+    for (int i = 0; i < goalCosts.length; i++) {
+      State goalState = group.goalStates.get(i);
+      if (reachability != null && reachability.isReachable(group.startState, goalState) == false) {
+        goalCosts[i] = BatchResult.UNREACHABLE;
+      } else {
+        goalCosts[i] = -1;
+        reachable.add(goalState);
+      }
+    }
+    if (reachable.isEmpty()) {
+      return goalCosts;
+    }
+    CostSearch search = (CostSearch) searches.get();
+    search.reset();
+    long[] reachableCosts = search.searchCosts(group.startState, reachable);
+    for (int i = 0, next = 0; i < goalCosts.length; i++) {
+      if (goalCosts[i] == -1) {
+        goalCosts[i] = reachableCosts[next++];
+      }
+    }
+    return goalCosts;
+  }
+
+  /**
+   * @param path
+   * @return the cost of path, or BatchResult.UNREACHABLE if it is empty
+   */
+  private long cost(ArrayList<State> path) {
+    if (path.isEmpty()) {
+      return BatchResult.UNREACHABLE;
+    }
+    long cost = 0;
+    for (int i = 0; i + 1 < path.size(); i++) {
+      State state = path.get(i);
+      State next = path.get(i + 1);
+      for (CostFunction cf : costFunctions) {
+        cost += cf.cost(state.getX(), state.getY(), next.getX(), next.getY());
+      }
+    }
+    return cost;
+  }
+
+  /**
+   * Jobs that share a start state, and the goal states of all of them without repeats.
+   */
+  private static class Group {
+    private final State startState;
+    private final ArrayList<Integer> jobs = new ArrayList<Integer>();
+    private final ArrayList<State> goalStates = new ArrayList<State>();
+    //Index in goalStates of each goal cell.
+    private final HashMap<Integer, Integer> goalIndex = new HashMap<Integer, Integer>();
+
+    private Group(State startState) {
+      this.startState = startState;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package strategy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import environment.Environment;
+import environment.TerrainListener;
+import search.CompactPath;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Bounded cache of search results, evicting the least recently used path once it holds more
+ * than capacity paths. Results are keyed on the cost model, the start state and the goal state,
+ * and FAIL results are cached too. Paths are stored as CompactPaths rather than State objects,
+ * so a path of n states takes about 3n / 8 bytes.
+ * One cache serves a single environment, and is emptied whenever its terrain changes. Methods
+ * are synchronized, so searches on several threads can share it.
+ */
+public class PathCache implements TerrainListener {
+  private final int nColumns;
+  private final int capacity;
+  private final LinkedHashMap<Key, CompactPath> paths;
+  private long hits;
+  private long misses;
+
+  /**
+   * @param env : Environment the paths are searched on. The cache listens to its terrain.
+   * @param capacity : Maximum number of cached paths
+   */
+  public PathCache(Environment env, final int capacity) {
+    this.nColumns = env.getNColumns();
+    this.capacity = capacity;
+    //Access order, so that the eldest entry is the least recently used.
+    this.paths = new LinkedHashMap<Key, CompactPath>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CompactPath> eldest) {
+        return size() > capacity;
+      }
+    };
+    env.addTerrainListener(this);
+  }
+
+  /**
+   * @param costModel : Algorithm and cost functions the path was searched with, see
+   * SearchFactory.costModel
+   * @param startState
+   * @param goalState
+   * @return a new copy of the cached path, empty for a cached FAIL, or null on a miss
+   */
+  public ArrayList<State> get(String costModel, State startState, State goalState) {
+    CompactPath path = getCompact(costModel, startState, goalState);
+    return path == null ? null : path.decode();
+  }
+
+  /**
+   * @param costModel : Algorithm and cost functions the path was searched with
+   * @param startState
+   * @param goalState
+   * @return the cached path, empty for a cached FAIL, or null on a miss
+   */
+  public synchronized CompactPath getCompact(String costModel, State startState,
+      State goalState) {
+    CompactPath path = paths.get(new Key(costModel, cell(startState), cell(goalState)));
+    if (path == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return path;
+  }
+
+  /**
+   * @param costModel : Algorithm and cost functions the path was searched with
+   * @param startState
+   * @param goalState
+   * @param path : Path from startState to goalState, empty for FAIL
+   */
+  public void put(String costModel, State startState, State goalState,
+      ArrayList<State> path) {
+    put(costModel, startState, goalState, CompactPath.encode(path));
+  }
+
+  /**
+   * @param costModel : Algorithm and cost functions the path was searched with
+   * @param startState
+   * @param goalState
+   * @param path : Path from startState to goalState, empty for FAIL
+   */
+  public synchronized void put(String costModel, State startState, State goalState,
+      CompactPath path) {
+    paths.put(new Key(costModel, cell(startState), cell(goalState)), path);
+  }
+
+  private int cell(State state) {
+    return state.getX() * nColumns + state.getY();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of cached paths
+   */
+  public synchronized int size() {
+    return paths.size();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Removes every path. Hit and miss counts are kept.
+   */
+  public synchronized void clear() {
+    paths.clear();
+  }
+
+  /**
+   * Removes every path, as a change can make any path dearer or offer a cheaper one.
+   */
+  public void cellChanged(int x, int y, int oldValue, int newValue) {
+    clear();
+  }
+
+  @Override
+  public synchronized String toString() {
+    long lookups = hits + misses;
+    return String.format("hits=%d misses=%d hitRate=%.1f%% paths=%d/%d", hits, misses,
+        lookups == 0 ? 0.0 : 100.0 * hits / lookups, paths.size(), capacity);
+  }
+
+  /**
+   * Cost model, start cell and goal cell of a cached path.
+   */
+  private static final class Key {
+    private final String costModel;
+    private final int start;
+    private final int goal;
+
+    Key(String costModel, int start, int goal) {
+      this.costModel = costModel;
+      this.start = start;
+      this.goal = goal;
+    }
+
+    @Override
+    public int hashCode() {
+      return (costModel.hashCode() * 31 + start) * 31 + goal;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj instanceof Key == false) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return start == other.start && goal == other.goal && costModel.equals(other.costModel);
+    }
+  }
+}
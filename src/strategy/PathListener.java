@@ -0,0 +1,21 @@
+package strategy;
+
+import java.util.ArrayList;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * PathListener receives the path to each goal state of a SearchContext batch as soon as it is
+ * found, so that it can be written out and dropped instead of kept until the batch is done.
+ */
+public interface PathListener {
+
+  /**
+   * Called once per goal state, in the order of the goal states, on the thread that called
+   * SearchContext.search.
+   * @param goal : Index of the goal state in the batch
+   * @param path : Sequence of states from start to goal, empty if no path was found
+   */
+  void pathFound(int goal, ArrayList<State> path);
+}
@@ -0,0 +1,31 @@
+package strategy;
+
+import java.util.ArrayList;
+
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * One job of a BatchSearch: routes from a start state to each of its goal states.
+ */
+public class RouteJob {
+  private final State startState;
+  private final ArrayList<State> goalStates;
+
+  /**
+   * @param startState
+   * @param goalStates
+   */
+  public RouteJob(State startState, ArrayList<State> goalStates) {
+    this.startState = startState;
+    this.goalStates = goalStates;
+  }
+
+  public State getStartState() {
+    return startState;
+  }
+
+  public ArrayList<State> getGoalStates() {
+    return goalStates;
+  }
+}
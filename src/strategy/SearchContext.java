@@ -1,8 +1,17 @@
 package strategy;
 
+import environment.ReachabilityIndex;
+import search.MultiGoalSearch;
 import search.Search;
+import search.SearchListener;
+import search.SearchMetrics;
+import search.ShortestPathTree;
 import state.State;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
@@ -11,21 +20,311 @@ import java.util.ArrayList;
 public class SearchContext {
 
   private Search searchStrategy;
+  //When set, strategies that support it search for all goal states in a single search.
+  private boolean multiGoal;
+  //When set, goal states are searched for concurrently on this executor.
+  private ExecutorService executor;
+  //Search instance of each executor thread, created from searchStrategy on first use.
+  private ThreadLocal<Search> workerSearches;
+  //Every instance made for workerSearches, to be closed with the context.
+  private final ArrayList<Search> workers = new ArrayList<Search>();
+  //Receives the metrics of every search and a summary of every batch, or null.
+  private SearchListener listener;
+  //Adds the metrics of every search to the summary of the running batch.
+  private SearchListener collector;
+  private final SearchMetrics summary = new SearchMetrics();
+  //When set, searches do not print the cost of every path.
+  private boolean quiet;
+  //Paths found earlier, or null.
+  private PathCache cache;
+  //Cost model of searchStrategy, part of the cache key.
+  private String costModel;
+  //Shortest path trees of frequent start states, or null.
+  private ShortestPathTreeCache treeCache;
+  //Algorithm of searchStrategy, part of the tree cache key.
+  private String algorithm;
+  //Connected components of the environment, or null.
+  private ReachabilityIndex reachability;
 
   /**
    * @param searchStrategy
    * Set the search strategy
    */
-  public void setStrategy(Search searchStrategy) {
+  public void setStrategy(final Search searchStrategy) {
+    closeWorkers();
     this.searchStrategy = searchStrategy;
+    this.searchStrategy.setListener(collector);
+    this.searchStrategy.setQuiet(quiet);
+    this.workerSearches = new ThreadLocal<Search>() {
+      @Override
+      protected Search initialValue() {
+        Search search = searchStrategy.newInstance();
+        search.setListener(collector);
+        search.setQuiet(quiet);
+        synchronized (workers) {
+          workers.add(search);
+        }
+        return search;
+      }
+    };
+  }
+
+  /**
+   * Closes the search strategy and the instances made from it for the executor threads. The
+   * context must not be used afterwards.
+   */
+  public void close() {
+    closeWorkers();
+    if (searchStrategy != null) {
+      searchStrategy.close();
+    }
+  }
+
+  /**
+   * Closes the executor threads' instances of the search strategy. The threads keep them in
+   * the old workerSearches, which no task uses after setStrategy or close.
+   */
+  private void closeWorkers() {
+    synchronized (workers) {
+      for (Search search : workers) {
+        search.close();
+      }
+      workers.clear();
+    }
+  }
+
+  /**
+   * @param listener
+   * Set the listener that receives the metrics of every search, from the thread that ran it,
+   * and a summary at the end of every batch. null stops collecting metrics.
+   */
+  public void setListener(final SearchListener listener) {
+    this.listener = listener;
+    if (listener == null) {
+      collector = null;
+    } else {
+      collector = new SearchListener() {
+        public void queryFinished(SearchMetrics metrics) {
+          synchronized (summary) {
+            summary.add(metrics);
+          }
+          listener.queryFinished(metrics);
+        }
+
+        public void batchFinished(SearchMetrics batch) {
+          //Batches are reported by search.
+        }
+      };
+    }
+    if (searchStrategy != null) {
+      //Also replaces the executor threads' instances, so that they report to collector.
+      setStrategy(searchStrategy);
+    }
+  }
+
+  /**
+   * @param quiet
+   * Set whether the searches stop printing the cost of every path to System.out.
+   */
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+    if (searchStrategy != null) {
+      //Also replaces the executor threads' instances, so that they stop printing.
+      setStrategy(searchStrategy);
+    }
+  }
+
+  /**
+   * @param multiGoal
+   * Set whether all goal states are searched for in a single search, when the search
+   * strategy is a MultiGoalSearch.
+   */
+  public void setMultiGoal(boolean multiGoal) {
+    this.multiGoal = multiGoal;
+  }
+
+  /**
+   * @param executor
+   * Set the executor on which goal states are searched for concurrently, one task per goal.
+   * Each executor thread uses its own instance of the search strategy. null searches for goal
+   * states one at a time on the calling thread.
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @param cache
+   * @param costModel : Cost model of the search strategy, see SearchFactory.costModel
+   * Set the cache that paths are looked up in before searching, and stored in after. Only goal
+   * states that miss the cache are searched for. null stops caching.
+   */
+  public void setCache(PathCache cache, String costModel) {
+    this.cache = cache;
+    this.costModel = costModel;
+  }
+
+  /**
+   * @param treeCache
+   * @param algorithm : Algorithm of the search strategy
+   * Set the cache of shortest path trees. Paths from a start state that has a tree are read
+   * from it instead of searched for. null stops using trees.
+   */
+  public void setTreeCache(ShortestPathTreeCache treeCache, String algorithm) {
+    this.treeCache = treeCache;
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * @param reachability
+   * Set the connected components of the environment. Goal states in another component than the
+   * start state are answered with an empty path without searching. null searches for every
+   * goal state.
+   */
+  public void setReachability(ReachabilityIndex reachability) {
+    this.reachability = reachability;
   }
 
   /**
    * @param startState
    * @param goalStates
-   * @return list of paths from start state to each of the goal states 
+   * @return list of paths from start state to each of the goal states
    */
   public ArrayList<ArrayList<State>> search(State startState, ArrayList<State> goalStates) {
+    if (listener == null) {
+      return searchCached(startState, goalStates);
+    }
+    summary.clear();
+    long begin = System.nanoTime();
+    ArrayList<ArrayList<State>> result = searchCached(startState, goalStates);
+    synchronized (summary) {
+      summary.setWallNanos(System.nanoTime() - begin);
+      listener.batchFinished(summary);
+    }
+    return result;
+  }
+
+  /**
+   * Searches like search, but passes each path to pathListener as soon as it is found instead
+   * of returning them all at the end. Goal states are searched for one at a time, or
+   * concurrently on the executor. A MultiGoalSearch in multi-goal mode, a tree cache, or an
+   * executor with a cache or reachability index searches the whole batch at once; its paths are
+   * passed on after it.
+   * @param startState
+   * @param goalStates
+   * @param pathListener : Receives the path to each goal state, in the order of goalStates
+   */
+  public void search(State startState, ArrayList<State> goalStates, PathListener pathListener) {
+    if (listener == null) {
+      searchStreamed(startState, goalStates, pathListener);
+      return;
+    }
+    summary.clear();
+    long begin = System.nanoTime();
+    searchStreamed(startState, goalStates, pathListener);
+    synchronized (summary) {
+      summary.setWallNanos(System.nanoTime() - begin);
+      listener.batchFinished(summary);
+    }
+  }
+
+  /**
+   * @param startState
+   * @param goalStates
+   * @param pathListener
+   */
+  private void searchStreamed(State startState, ArrayList<State> goalStates,
+      PathListener pathListener) {
+    if ((multiGoal && searchStrategy instanceof MultiGoalSearch) || treeCache != null
+        || (executor != null && (cache != null || reachability != null))) {
+      ArrayList<ArrayList<State>> result = searchCached(startState, goalStates);
+      for (int i = 0; i < result.size(); i++) {
+        pathListener.pathFound(i, result.get(i));
+        result.set(i, null);
+      }
+      return;
+    }
+    if (executor != null) {
+      collect(submit(startState, goalStates), pathListener);
+      return;
+    }
+    //One goal state at a time, still through the cache and reachability index.
+    ArrayList<State> goalState = new ArrayList<State>(1);
+    goalState.add(null);
+    for (int i = 0; i < goalStates.size(); i++) {
+      goalState.set(0, goalStates.get(i));
+      pathListener.pathFound(i, searchCached(startState, goalState).get(0));
+    }
+  }
+
+  /**
+   * Fails goal states that cannot be reached, looks the others up in the cache, reads the rest
+   * from the tree of the start state if it has one, and otherwise searches for them.
+   * @param startState
+   * @param goalStates
+   * @return list of paths from start state to each of the goal states
+   */
+  private ArrayList<ArrayList<State>> searchCached(State startState,
+      ArrayList<State> goalStates) {
+    if (cache == null && treeCache == null && reachability == null) {
+      return searchBatch(startState, goalStates);
+    }
+    ArrayList<ArrayList<State>> result = new ArrayList<ArrayList<State>>();
+    ArrayList<State> misses = new ArrayList<State>();
+    for (State goalState : goalStates) {
+      ArrayList<State> path = null;
+      if (reachability != null && reachability.isReachable(startState, goalState) == false) {
+        //FAIL
+        path = new ArrayList<State>();
+      } else if (cache != null) {
+        path = cache.get(costModel, startState, goalState);
+      }
+      result.add(path);
+      if (path == null) {
+        misses.add(goalState);
+      }
+    }
+    if (misses.isEmpty()) {
+      return result;
+    }
+
+    ShortestPathTree tree = treeCache == null ? null : treeCache.get(algorithm, startState);
+    ArrayList<ArrayList<State>> found;
+    if (tree != null) {
+      found = new ArrayList<ArrayList<State>>();
+      for (State goalState : misses) {
+        found.add(tree.getPath(goalState));
+      }
+    } else {
+      found = searchBatch(startState, misses);
+    }
+    int next = 0;
+    for (int i = 0; i < result.size(); i++) {
+      if (result.get(i) == null) {
+        ArrayList<State> path = found.get(next++);
+        if (cache != null) {
+          cache.put(costModel, startState, goalStates.get(i), path);
+        }
+        result.set(i, path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param startState
+   * @param goalStates
+   * @return list of paths from start state to each of the goal states
+   */
+  private ArrayList<ArrayList<State>> searchBatch(State startState,
+      ArrayList<State> goalStates) {
+    if (multiGoal && searchStrategy instanceof MultiGoalSearch) {
+      searchStrategy.reset();
+      return ((MultiGoalSearch) searchStrategy).search(startState, goalStates);
+    }
+    if (executor != null) {
+      return searchConcurrently(startState, goalStates);
+    }
     ArrayList<ArrayList<State>> result = new ArrayList<ArrayList<State>>();;
     for (State goalState : goalStates) {
       searchStrategy.reset();
@@ -33,4 +332,69 @@ public class SearchContext {
     }
     return result;
   }
+
+  /**
+   * Submits one task per goal state to the executor and collects the paths in the order of
+   * goalStates.
+   * @param startState
+   * @param goalStates
+   * @return list of paths from start state to each of the goal states
+   */
+  private ArrayList<ArrayList<State>> searchConcurrently(State startState,
+      ArrayList<State> goalStates) {
+    final ArrayList<ArrayList<State>> result = new ArrayList<ArrayList<State>>();
+    collect(submit(startState, goalStates), new PathListener() {
+      public void pathFound(int goal, ArrayList<State> path) {
+        result.add(path);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Submits one task per goal state to the executor.
+   * @param startState
+   * @param goalStates
+   * @return the path of each goal state, to come
+   */
+  private ArrayList<Future<ArrayList<State>>> submit(final State startState,
+      ArrayList<State> goalStates) {
+    ArrayList<Future<ArrayList<State>>> futures = new ArrayList<Future<ArrayList<State>>>();
+    for (final State goalState : goalStates) {
+      futures.add(executor.submit(new Callable<ArrayList<State>>() {
+        public ArrayList<State> call() {
+          Search search = workerSearches.get();
+          search.reset();
+          return search.search(startState, goalState);
+        }
+      }));
+    }
+    return futures;
+  }
+
+  /**
+   * Waits for each path in turn and passes it to pathListener as soon as it is found.
+   * @param futures
+   * @param pathListener
+   */
+  private void collect(ArrayList<Future<ArrayList<State>>> futures, PathListener pathListener) {
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        pathListener.pathFound(i, futures.get(i).get());
+        //Done with, so that the path can be collected.
+        futures.set(i, null);
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while searching", ie);
+    } catch (ExecutionException ee) {
+      throw new IllegalStateException("Search failed", ee.getCause());
+    } finally {
+      for (Future<ArrayList<State>> future : futures) {
+        if (future != null) {
+          future.cancel(true);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,380 @@
+package strategy;
+
+import java.util.ArrayList;
+
+import costfunction.CostFunction;
+import costfunction.EuclideanCostFunction;
+import costfunction.IdentityCostFunction;
+import costfunction.LandmarkCostFunction;
+import costfunction.MaxCostFunction;
+import costfunction.MoveCostFunction;
+import costfunction.MuddinessCostFunction;
+import costfunction.OctileCostFunction;
+import costfunction.SteepnessBoundCostFunction;
+import costfunction.SteepnessCostFunction;
+import environment.Environment;
+import operators.EastOperator;
+import operators.NorthEastOperator;
+import operators.NorthOperator;
+import operators.NorthWestOperator;
+import operators.Operator;
+import operators.SouthEastOperator;
+import operators.SouthOperator;
+import operators.SouthWestOperator;
+import operators.WestOperator;
+import search.AStarSearch;
+import search.BFSSearch;
+import search.BidirectionalSearch;
+import search.GridAStarSearch;
+import search.HierarchicalSearch;
+import search.IncrementalSearch;
+import search.JumpPointSearch;
+import search.Search;
+import search.UCSSearch;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Builds a search strategy, with its operators and cost model, from an algorithm name as it
+ * appears on the first line of the input file.
+ */
+public class SearchFactory {
+  public static final String BFS = "BFS";
+  public static final String UCS = "UCS";
+  public static final String ASTAR = "A*";
+  //Engine of the algorithm, backed by node objects and hash maps. So is an empty name.
+  public static final String DEFAULT_ENGINE = "default";
+  //Engine backed by primitive arrays instead of node objects and hash maps.
+  public static final String GRID_ENGINE = "grid";
+  //Array backed engine that searches from the start and the goal until the searches meet.
+  public static final String BIDIRECTIONAL_ENGINE = "bidirectional";
+  //Array backed engine that jumps over flat regions of the terrain.
+  public static final String JPS_ENGINE = "jps";
+  //Hierarchical engine over clusters of the terrain. "hpa:N" sets the cluster size to N.
+  public static final String HIERARCHICAL_ENGINE = "hpa";
+  //Array backed engine that repairs its previous solution after the terrain changes.
+  public static final String INCREMENTAL_ENGINE = "incremental";
+  //Array backed engine whose running queue is a bucket queue instead of a binary heap.
+  public static final String DIAL_ENGINE = "dial";
+  //Every engine name, as listed in usage errors. "hpa:N" is also accepted.
+  public static final String[] ENGINES = {DEFAULT_ENGINE, GRID_ENGINE, BIDIRECTIONAL_ENGINE,
+      JPS_ENGINE, HIERARCHICAL_ENGINE, INCREMENTAL_ENGINE, DIAL_ENGINE};
+  //A* heuristics. Names are joined with '+' to add heuristics up.
+  public static final String EUCLIDEAN_HEURISTIC = "euclidean";
+  public static final String OCTILE_HEURISTIC = "octile";
+  public static final String STEEPNESS_HEURISTIC = "steepness";
+  //Bounds the whole path cost, so it is combined with the others by taking the larger value.
+  public static final String LANDMARK_HEURISTIC = "landmarks";
+
+  /**
+   * @return operators for the 8 directions, in the order of operators.Directions
+   */
+  public static ArrayList<Operator> operators() {
+    ArrayList<Operator> operators = new ArrayList<Operator>();
+    operators.add(new NorthOperator());
+    operators.add(new NorthEastOperator());
+    operators.add(new EastOperator());
+    operators.add(new SouthEastOperator());
+    operators.add(new SouthOperator());
+    operators.add(new SouthWestOperator());
+    operators.add(new WestOperator());
+    operators.add(new NorthWestOperator());
+    return operators;
+  }
+
+  /**
+   * @param algorithm : Algorithm name, in any case
+   * @return BFS, UCS or ASTAR. Any other name is A*.
+   */
+  public static String algorithm(String algorithm) {
+    if (algorithm.equalsIgnoreCase(BFS)) {
+      return BFS;
+    } else if (algorithm.equalsIgnoreCase(UCS)) {
+      return UCS;
+    }
+    return ASTAR;
+  }
+
+  /**
+   * @param algorithm : BFS, UCS or A*. Any other name selects A*.
+   * @param env
+   * @return the cost functions that define the cost of a move for algorithm
+   */
+  public static ArrayList<CostFunction> costFunctions(String algorithm, Environment env) {
+    ArrayList<CostFunction> costFunctions = new ArrayList<CostFunction>();
+    if (algorithm.equalsIgnoreCase(BFS)) {
+      //Cost of moving from current state to next state is a constant.
+      costFunctions.add(new IdentityCostFunction());
+    } else if (algorithm.equalsIgnoreCase(UCS)) {
+      //For UCS, cost is calculated based on approximate move distance.
+      costFunctions.add(new MoveCostFunction());
+    } else {
+      //For A*, cost is move cost + steepness cost + muddiness cost.
+      costFunctions.add(new MoveCostFunction());
+      costFunctions.add(new SteepnessCostFunction(env));
+      costFunctions.add(new MuddinessCostFunction(env));
+    }
+    return costFunctions;
+  }
+
+  /**
+   * @param algorithm : BFS, UCS or A*. Any other name selects A*.
+   * @param env
+   * @return a name for the algorithm and its cost functions, for example
+   * "A*:MoveCostFunction+SteepnessCostFunction+MuddinessCostFunction". Searches with the same
+   * cost model find paths of the same cost.
+   */
+  public static String costModel(String algorithm, Environment env) {
+    StringBuilder sb = new StringBuilder(algorithm(algorithm)).append(':');
+    ArrayList<CostFunction> costFunctions = costFunctions(algorithm, env);
+    for (int i = 0; i < costFunctions.size(); i++) {
+      if (i > 0) {
+        sb.append('+');
+      }
+      sb.append(costFunctions.get(i).getClass().getSimpleName());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param algorithm : BFS, UCS or A*. Any other name selects A*.
+   * @param env
+   * @return the cost of the dearest move for algorithm on env: a diagonal move, plus for A* the
+   * highest climb allowed and the deepest mud of the terrain
+   */
+  public static long maxMoveCost(String algorithm, Environment env) {
+    if (algorithm.equalsIgnoreCase(BFS)) {
+      return new IdentityCostFunction().cost(0, 0, 1, 1);
+    }
+    long moveCost = new MoveCostFunction().cost(0, 0, 1, 1);
+    if (algorithm.equalsIgnoreCase(UCS)) {
+      return moveCost;
+    }
+    int maxMuddiness = 0;
+    for (int x = 0; x < env.getNRows(); x++) {
+      for (int y = 0; y < env.getNColumns(); y++) {
+        maxMuddiness = Math.max(maxMuddiness, env.getMuddiness(x, y));
+      }
+    }
+    return moveCost + env.getMaxClimbHeight() + maxMuddiness;
+  }
+
+  /**
+   * Builds the landmark heuristic for the A* cost model of env.
+   * @param env
+   * @param count : Number of landmarks
+   * @return the heuristic
+   */
+  public static LandmarkCostFunction landmarks(Environment env, int count) {
+    return LandmarkCostFunction.build(env, operators(), costFunctions(ASTAR, env), count);
+  }
+
+  /**
+   * Same as heuristics(names, env, null).
+   */
+  public static ArrayList<CostFunction> heuristics(String names, Environment env) {
+    return heuristics(names, env, null);
+  }
+
+  /**
+   * @param names : Heuristic names joined with '+', for example "octile+steepness". At most one
+   * of euclidean and octile, as both bound the same move cost.
+   * @param env
+   * @param landmarks : Landmark heuristic to use for LANDMARK_HEURISTIC. If null, one with
+   * DEFAULT_LANDMARKS landmarks is built when the names ask for it.
+   * @return the heuristic cost functions for A*
+   */
+  public static ArrayList<CostFunction> heuristics(String names, Environment env,
+      LandmarkCostFunction landmarks) {
+    checkHeuristic(names);
+    ArrayList<CostFunction> heuristicCostFunctions = new ArrayList<CostFunction>();
+    boolean useLandmarks = false;
+    for (String name : names.split("\\+")) {
+      if (name.equalsIgnoreCase(EUCLIDEAN_HEURISTIC) || name.equalsIgnoreCase(OCTILE_HEURISTIC)) {
+        heuristicCostFunctions.add(name.equalsIgnoreCase(OCTILE_HEURISTIC)
+            ? new OctileCostFunction() : new EuclideanCostFunction());
+      } else if (name.equalsIgnoreCase(STEEPNESS_HEURISTIC)) {
+        heuristicCostFunctions.add(new SteepnessBoundCostFunction(env));
+      } else {
+        useLandmarks = true;
+      }
+    }
+    if (useLandmarks == false) {
+      return heuristicCostFunctions;
+    }
+
+    if (landmarks == null) {
+      landmarks = landmarks(env, LandmarkCostFunction.DEFAULT_LANDMARKS);
+    }
+    ArrayList<CostFunction> landmarkHeuristic = new ArrayList<CostFunction>();
+    landmarkHeuristic.add(landmarks);
+    if (heuristicCostFunctions.isEmpty()) {
+      return landmarkHeuristic;
+    }
+    //max(sum of the other heuristics, landmarks)
+    ArrayList<ArrayList<CostFunction>> alternatives = new ArrayList<ArrayList<CostFunction>>();
+    alternatives.add(heuristicCostFunctions);
+    alternatives.add(landmarkHeuristic);
+    ArrayList<CostFunction> combined = new ArrayList<CostFunction>();
+    combined.add(new MaxCostFunction(alternatives));
+    return combined;
+  }
+
+  /**
+   * Same as create(algorithm, engine, EUCLIDEAN_HEURISTIC, env).
+   */
+  public static Search create(String algorithm, String engine, Environment env) {
+    return create(algorithm, engine, EUCLIDEAN_HEURISTIC, env);
+  }
+
+  /**
+   * @param algorithm : BFS, UCS or A*. Any other name selects A*.
+   * @param engine : GRID_ENGINE, BIDIRECTIONAL_ENGINE, JPS_ENGINE, HIERARCHICAL_ENGINE,
+   * INCREMENTAL_ENGINE or DIAL_ENGINE for the array backed engines, DEFAULT_ENGINE or "" for the
+   * engine of the algorithm. BFS always runs on its own engine.
+   * @param heuristic : Heuristic names for A*, see heuristics
+   * @param env
+   * @return a search strategy for algorithm over env
+   */
+  public static Search create(String algorithm, String engine, String heuristic,
+      Environment env) {
+    return create(algorithm, engine, heuristic, null, env);
+  }
+
+  /**
+   * @param algorithm : BFS, UCS or A*. Any other name selects A*.
+   * @param engine : GRID_ENGINE, BIDIRECTIONAL_ENGINE, JPS_ENGINE, HIERARCHICAL_ENGINE,
+   * INCREMENTAL_ENGINE or DIAL_ENGINE for the array backed engines, DEFAULT_ENGINE or "" for the
+   * engine of the algorithm. BFS always runs on its own engine.
+   * @param heuristic : Heuristic names for A*, see heuristics
+   * @param landmarks : Prebuilt landmark heuristic for LANDMARK_HEURISTIC, or null
+   * @param env
+   * @return a search strategy for algorithm over env
+   * @throws IllegalArgumentException if engine is not one of ENGINES
+   */
+  public static Search create(String algorithm, String engine, String heuristic,
+      LandmarkCostFunction landmarks, Environment env) {
+    checkEngine(engine);
+    ArrayList<Operator> operators = operators();
+    ArrayList<CostFunction> costFunctions = costFunctions(algorithm, env);
+    if (algorithm.equalsIgnoreCase(BFS)) {
+      return new BFSSearch(env, operators, costFunctions);
+    } else if (algorithm.equalsIgnoreCase(UCS)) {
+      if (engine.equalsIgnoreCase(GRID_ENGINE)) {
+        //UCS is A* without a heuristic.
+        return new GridAStarSearch(env, operators, costFunctions, new ArrayList<CostFunction>());
+      } else if (engine.equalsIgnoreCase(BIDIRECTIONAL_ENGINE)) {
+        //Bidirectional Dijkstra.
+        return new BidirectionalSearch(env, operators, costFunctions,
+            new ArrayList<CostFunction>());
+      } else if (engine.equalsIgnoreCase(JPS_ENGINE)) {
+        return new JumpPointSearch(env, operators, costFunctions, new ArrayList<CostFunction>());
+      } else if (isHierarchical(engine)) {
+        return new HierarchicalSearch(env, operators, costFunctions,
+            new ArrayList<CostFunction>(), clusterSize(engine));
+      } else if (engine.equalsIgnoreCase(INCREMENTAL_ENGINE)) {
+        return new IncrementalSearch(env, operators, costFunctions,
+            new ArrayList<CostFunction>());
+      } else if (engine.equalsIgnoreCase(DIAL_ENGINE)) {
+        //Dijkstra priorities spread over the cost of the dearest move.
+        return new GridAStarSearch(env, operators, costFunctions, new ArrayList<CostFunction>(),
+            maxMoveCost(algorithm, env));
+      }
+      return new UCSSearch(env, operators, costFunctions);
+    }
+    //Heuristic is Euclidean unless another is selected.
+    ArrayList<CostFunction> heuristicCostFunctions = heuristics(heuristic, env, landmarks);
+    if (engine.equalsIgnoreCase(GRID_ENGINE)) {
+      return new GridAStarSearch(env, operators, costFunctions, heuristicCostFunctions);
+    } else if (engine.equalsIgnoreCase(BIDIRECTIONAL_ENGINE)) {
+      return new BidirectionalSearch(env, operators, costFunctions, heuristicCostFunctions);
+    } else if (engine.equalsIgnoreCase(JPS_ENGINE)) {
+      return new JumpPointSearch(env, operators, costFunctions, heuristicCostFunctions);
+    } else if (isHierarchical(engine)) {
+      return new HierarchicalSearch(env, operators, costFunctions, heuristicCostFunctions,
+          clusterSize(engine));
+    } else if (engine.equalsIgnoreCase(INCREMENTAL_ENGINE)) {
+      return new IncrementalSearch(env, operators, costFunctions, heuristicCostFunctions);
+    } else if (engine.equalsIgnoreCase(DIAL_ENGINE)) {
+      //A heuristic can stretch the spread up to the cost of a move there and back.
+      return new GridAStarSearch(env, operators, costFunctions, heuristicCostFunctions,
+          2 * maxMoveCost(algorithm, env));
+    }
+    return new AStarSearch(env, operators, costFunctions, heuristicCostFunctions);
+  }
+
+  /**
+   * @param names : Heuristic names joined with '+', see heuristics
+   * @throws IllegalArgumentException if a name is not a heuristic, or names has more than one
+   * distance heuristic
+   */
+  public static void checkHeuristic(String names) {
+    boolean distance = false;
+    for (String name : names.split("\\+")) {
+      if (name.equalsIgnoreCase(EUCLIDEAN_HEURISTIC) || name.equalsIgnoreCase(OCTILE_HEURISTIC)) {
+        if (distance) {
+          throw new IllegalArgumentException("More than one distance heuristic in " + names);
+        }
+        distance = true;
+      } else if (name.equalsIgnoreCase(STEEPNESS_HEURISTIC) == false
+          && name.equalsIgnoreCase(LANDMARK_HEURISTIC) == false) {
+        throw new IllegalArgumentException("Unknown heuristic " + name + ", expected "
+            + EUCLIDEAN_HEURISTIC + " or " + OCTILE_HEURISTIC + ", " + STEEPNESS_HEURISTIC
+            + " and " + LANDMARK_HEURISTIC + " joined with +");
+      }
+    }
+  }
+
+  /**
+   * @param engine
+   * @throws IllegalArgumentException if engine is not one of ENGINES, or "hpa:N" with N not a
+   * positive number
+   */
+  public static void checkEngine(String engine) {
+    if (isHierarchical(engine)) {
+      clusterSize(engine);
+      return;
+    }
+    if (engine.isEmpty()) {
+      return;
+    }
+    for (String name : ENGINES) {
+      if (name.equalsIgnoreCase(engine)) {
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Unknown engine " + engine + ", expected one of "
+        + String.join(", ", ENGINES) + " or " + HIERARCHICAL_ENGINE + ":N");
+  }
+
+  /**
+   * @param engine
+   * @return whether engine is HIERARCHICAL_ENGINE, with or without a cluster size
+   */
+  private static boolean isHierarchical(String engine) {
+    return engine.equalsIgnoreCase(HIERARCHICAL_ENGINE)
+        || engine.toLowerCase().startsWith(HIERARCHICAL_ENGINE + ":");
+  }
+
+  /**
+   * @param engine : "hpa" or "hpa:N"
+   * @return N, or the default cluster size
+   * @throws IllegalArgumentException if N is not a positive number
+   */
+  private static int clusterSize(String engine) {
+    if (engine.length() > HIERARCHICAL_ENGINE.length()) {
+      String size = engine.substring(HIERARCHICAL_ENGINE.length() + 1);
+      int clusterSize;
+      try {
+        clusterSize = Integer.parseInt(size);
+      } catch (NumberFormatException nfe) {
+        clusterSize = 0;
+      }
+      if (clusterSize <= 0) {
+        throw new IllegalArgumentException("Cluster size of engine " + engine
+            + " must be a positive number");
+      }
+      return clusterSize;
+    }
+    return HierarchicalSearch.DEFAULT_CLUSTER_SIZE;
+  }
+}
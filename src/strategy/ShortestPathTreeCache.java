@@ -0,0 +1,168 @@
+package strategy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import environment.Environment;
+import environment.TerrainListener;
+import search.ShortestPathTree;
+import state.State;
+
+/**
+ * @author Nikhil Chakravartula (nchakrav@usc.edu) (nikhilchakravartula@gmail.com)
+ * Keeps full shortest path trees for start states that are searched from often, so that a path
+ * from one of them is rebuilt by walking parent links instead of searching. A start state gets
+ * a tree on its promoteAfter-th lookup, or when preloaded. A tree takes 12 bytes per cell;
+ * trees are evicted least recently used first to keep the total under the memory budget.
+ * Trees are keyed on the algorithm and the start state, and built with the cost functions
+ * SearchFactory gives the algorithm, so their paths cost the same as the searches'.
+ * One cache serves a single environment, and drops its trees whenever the terrain changes.
+ * Trees are built outside the lock, so lookups on other threads are not held up by a sweep.
+ */
+public class ShortestPathTreeCache implements TerrainListener {
+  //Number of start states whose lookups are counted before they get a tree.
+  static final int MAX_CANDIDATES = 1 << 12;
+
+  private final Environment env;
+  private final long budgetBytes;
+  private final int promoteAfter;
+  //Trees in access order, so that the eldest entry is the least recently used.
+  private final LinkedHashMap<String, ShortestPathTree> trees =
+      new LinkedHashMap<String, ShortestPathTree>(16, 0.75f, true);
+  //Lookups of start states without a tree, least recently seen first.
+  private final LinkedHashMap<String, Integer> candidates =
+      new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+          return size() > MAX_CANDIDATES;
+        }
+      };
+  private long bytes;
+  private long hits;
+  private long built;
+  private long evicted;
+
+  /**
+   * @param env : The cache listens to its terrain.
+   * @param budgetBytes : Maximum bytes taken by all trees
+   * @param promoteAfter : Number of lookups of a start state after which it gets a tree
+   */
+  public ShortestPathTreeCache(Environment env, long budgetBytes, int promoteAfter) {
+    this.env = env;
+    this.budgetBytes = budgetBytes;
+    this.promoteAfter = promoteAfter;
+    env.addTerrainListener(this);
+  }
+
+  /**
+   * Drops every tree and lookup count. Evictions are not counted.
+   */
+  public synchronized void cellChanged(int x, int y, int oldValue, int newValue) {
+    trees.clear();
+    candidates.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Counts a lookup of startState, and builds its tree if it has now been looked up
+   * promoteAfter times.
+   * @param algorithm
+   * @param startState
+   * @return the tree of startState, or null if it has none
+   */
+  public ShortestPathTree get(String algorithm, State startState) {
+    String key = key(algorithm, startState);
+    synchronized (this) {
+      ShortestPathTree tree = trees.get(key);
+      if (tree != null) {
+        hits++;
+        return tree;
+      }
+      Integer lookups = candidates.get(key);
+      lookups = lookups == null ? 1 : lookups + 1;
+      if (lookups < promoteAfter || fits() == false) {
+        candidates.put(key, lookups);
+        return null;
+      }
+      candidates.remove(key);
+    }
+    return build(key, algorithm, startState);
+  }
+
+  /**
+   * Builds the tree of startState now, unless it has one.
+   * @param algorithm
+   * @param startState
+   * @return the tree of startState, or null if a single tree does not fit the budget
+   */
+  public ShortestPathTree preload(String algorithm, State startState) {
+    String key = key(algorithm, startState);
+    synchronized (this) {
+      ShortestPathTree tree = trees.get(key);
+      if (tree != null) {
+        return tree;
+      }
+      if (fits() == false) {
+        return null;
+      }
+    }
+    return build(key, algorithm, startState);
+  }
+
+  /**
+   * @return whether one tree fits the budget
+   */
+  private boolean fits() {
+    return 12L * env.getNRows() * env.getNColumns() <= budgetBytes;
+  }
+
+  private ShortestPathTree build(String key, String algorithm, State startState) {
+    ShortestPathTree tree = ShortestPathTree.compute(env, SearchFactory.operators(),
+        SearchFactory.costFunctions(algorithm, env), startState, false, true);
+    synchronized (this) {
+      ShortestPathTree existing = trees.get(key);
+      if (existing != null) {
+        //Built on another thread meanwhile.
+        return existing;
+      }
+      trees.put(key, tree);
+      bytes += tree.getBytes();
+      built++;
+      Iterator<ShortestPathTree> eldest = trees.values().iterator();
+      while (bytes > budgetBytes && eldest.hasNext()) {
+        ShortestPathTree victim = eldest.next();
+        if (victim == tree) {
+          continue;
+        }
+        bytes -= victim.getBytes();
+        eldest.remove();
+        evicted++;
+      }
+    }
+    return tree;
+  }
+
+  private String key(String algorithm, State startState) {
+    return SearchFactory.algorithm(algorithm) + ' ' + startState.getX() + ' '
+        + startState.getY();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getBuilt() {
+    return built;
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("hits=%d built=%d evicted=%d trees=%d bytes=%d/%d", hits, built,
+        evicted, trees.size(), bytes, budgetBytes);
+  }
+}